@@ -0,0 +1,41 @@
+package javapaint;
+
+// Undo entry for appending a shape. Shapes are only ever appended, so undoing an add always removes
+// the last one. The shape itself lives in the store; it is only copied out while it sits on the
+// redo side, but the budget always counts that copy so the accounting stays stable.
+class AddShapeEdit implements EditHistory.Edit {
+    private final ShapeStore shapes;
+    private final long shapeBytes;
+    private final Runnable onUndo, onRedo;
+    private ShapeData removed;
+
+    AddShapeEdit(ShapeStore shapes, long shapeBytes, Runnable onChange) {
+        this(shapes, shapeBytes, onChange, onChange);
+    }
+
+    AddShapeEdit(ShapeStore shapes, long shapeBytes, Runnable onUndo, Runnable onRedo) {
+        this.shapes = shapes;
+        this.shapeBytes = shapeBytes;
+        this.onUndo = onUndo;
+        this.onRedo = onRedo;
+    }
+
+    @Override
+    public void undo() {
+        removed = shapes.get(shapes.size() - 1);
+        shapes.removeLast();
+        onUndo.run();
+    }
+
+    @Override
+    public void redo() {
+        shapes.add(removed);
+        removed = null;
+        onRedo.run();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return 16 + shapeBytes;
+    }
+}
@@ -0,0 +1,191 @@
+package javapaint;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Headless batch mode: renders scene files to PNG, or converts them to SVG, on a bounded pool of workers.
+// Scenes may be .jpaint, text or .svg files. PNGs are antialiased like the idle canvas unless --fast
+// is given, which uses the quicker hints the canvas uses while drawing.
+//
+//   java JavaPaint --render [--format png|svg] [--fast] [--scale <factor>] [--threads <n>] [--out <dir>] scene...
+class BatchRenderer {
+    private double scale = 1.0;
+    private boolean svg;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Path outputDirectory;
+    private final List<Path> inputs = new ArrayList<>();
+    private final TileRenderer tileRenderer = new TileRenderer();
+
+    // Outcome of rendering one file
+    private static class Result {
+        final Path input;
+        final int shapes;
+        final long pixels;
+        final long bytesRead, bytesWritten;
+        final long nanos;
+
+        Result(Path input, int shapes, long pixels, long bytesRead, long bytesWritten, long nanos) {
+            this.input = input;
+            this.shapes = shapes;
+            this.pixels = pixels;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.nanos = nanos;
+        }
+    }
+
+    // Returns the process exit code: 0 on success, 1 if any file failed, 2 on bad arguments
+    public static int run(String[] args) {
+        BatchRenderer renderer = new BatchRenderer();
+        try {
+            renderer.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java JavaPaint --render [--format png|svg] [--fast] [--scale <factor>] [--threads <n>] [--out <dir>] scene...");
+            return 2;
+        }
+        return renderer.renderAll();
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--render":
+                    break;
+                case "--format":
+                    String format = value(args, ++i, arg);
+                    if (!format.equals("png") && !format.equals("svg")) {
+                        throw new IllegalArgumentException("--format must be png or svg");
+                    }
+                    svg = format.equals("svg");
+                    break;
+                case "--fast":
+                    tileRenderer.setHighQuality(false);
+                    break;
+                case "--scale":
+                    scale = Double.parseDouble(value(args, ++i, arg));
+                    if (!(scale > 0)) {
+                        throw new IllegalArgumentException("--scale must be positive");
+                    }
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value(args, ++i, arg));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("--threads must be at least 1");
+                    }
+                    break;
+                case "--out":
+                    outputDirectory = Paths.get(value(args, ++i, arg));
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    inputs.add(Paths.get(arg));
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No scene files given");
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private int renderAll() {
+        if (outputDirectory != null) {
+            try {
+                Files.createDirectories(outputDirectory);
+            } catch (IOException e) {
+                System.err.println("Cannot create " + outputDirectory + ": " + e.getMessage());
+                return 1;
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, inputs.size()));
+        long start = System.nanoTime();
+        List<Future<Result>> futures = new ArrayList<>();
+        for (Path input : inputs) {
+            futures.add(pool.submit(() -> render(input)));
+        }
+
+        int failures = 0, shapes = 0;
+        long pixels = 0, bytesRead = 0, bytesWritten = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                Result result = futures.get(i).get();
+                shapes += result.shapes;
+                pixels += result.pixels;
+                bytesRead += result.bytesRead;
+                bytesWritten += result.bytesWritten;
+                System.out.printf("%s: %d shapes, %.1f ms%n", result.input, result.shapes, result.nanos / 1e6);
+            } catch (Exception e) {
+                failures++;
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println(inputs.get(i) + ": " + cause);
+            }
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s %d of %d files in %.2f s (%.1f files/s, %.0f shapes/s, %.1f Mpixel/s, "
+                        + "%.1f MB/s read, %.1f MB/s written)%n",
+                svg ? "Converted" : "Rendered", inputs.size() - failures, inputs.size(), seconds,
+                (inputs.size() - failures) / seconds, shapes / seconds, pixels / seconds / 1e6,
+                bytesRead / seconds / 1e6, bytesWritten / seconds / 1e6);
+        return failures == 0 ? 0 : 1;
+    }
+
+    private Result render(Path input) throws IOException {
+        long start = System.nanoTime();
+        Scene scene;
+        if (SceneBinary.isSceneFile(input)) {
+            scene = SceneBinary.read(input);
+        } else if (SceneSvg.isSvgFile(input)) {
+            scene = SceneSvg.read(input);
+        } else {
+            try (BufferedReader reader = Files.newBufferedReader(input)) {
+                scene = SceneText.read(reader);
+            }
+        }
+        long bytesRead = Files.size(input);
+
+        Path output = outputPath(input);
+        if (svg) {
+            SceneSvg.write(output, scene);
+            return new Result(input, scene.getShapes().size(), 0, bytesRead, Files.size(output),
+                    System.nanoTime() - start);
+        }
+        int width = TileRenderer.outputSize(scene.getWidth(), scale);
+        int height = TileRenderer.outputSize(scene.getHeight(), scale);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output));
+             PngWriter png = new PngWriter(out, width, height)) {
+            tileRenderer.render(scene.getShapes(), scene.getBackground(), scene.getWidth(), scene.getHeight(), scale,
+                    (y, band, bandHeight) -> png.writeRows(band, bandHeight));
+        }
+        return new Result(input, scene.getShapes().size(), (long) width * height, bytesRead, Files.size(output),
+                System.nanoTime() - start);
+    }
+
+    private Path outputPath(Path input) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String output = (dot > 0 ? name.substring(0, dot) : name) + (svg ? ".svg" : ".png");
+        Path directory = outputDirectory != null ? outputDirectory : input.toAbsolutePath().getParent();
+        return directory.resolve(output);
+    }
+}
@@ -0,0 +1,463 @@
+package javapaint;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Base64;
+
+// Streams a standalone Swing program that draws the scene.
+// Colour and stroke are only set when they differ from what the previous shape left behind,
+// and the drawing calls are split over helper methods that stay well below the JVM's 64 KB
+// method limit (and below HotSpot's 8000-byte limit for JIT-compiling a method).
+//
+// In the DATA_TABLE style the shapes are instead packed into base64 string constants that a fixed
+// interpreter loop draws from, so the program stays a few kilobytes of code whatever the scene size.
+class CodeGenerator {
+    enum Style {
+        // One drawing statement per shape; easy to read and edit by hand
+        STATEMENTS,
+        // Shapes as data plus a small loop; compiles and loads quickly and paints at JIT-compiled speed
+        DATA_TABLE
+    }
+
+    // Rough bytecode cost of the statements, used to decide when to start a new helper method
+    private static final int METHOD_BUDGET = 7000;
+    private static final int SET_COLOR_COST = 24;
+    private static final int SET_STROKE_COST = 16;
+    private static final int DRAW_COST = 18;
+    private static final int POLYGON_COST = 24;
+    private static final int VERTEX_COST = 16;
+
+    // Larger polygons carry their vertices in string literals, which cost almost no bytecode
+    private static final int MAX_INLINE_VERTICES = 256;
+    private static final int MAX_LITERAL_LENGTH = 32 * 1024;
+
+    private final Writer out;
+    private final Style style;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+
+    // State the generated code has set on g2d so far; -1 means not set yet.
+    // The stroke is its width times two, plus one for the round caps and joins of pencil strokes.
+    private long currentColor = -1;
+    private int currentStroke = -1;
+
+    private int methodCount = 0;
+    private int methodBytes = 0;
+    private boolean inMethod = false;
+    private boolean usesPackedVertices = false;
+
+    CodeGenerator(Writer out) {
+        this(out, Style.STATEMENTS);
+    }
+
+    CodeGenerator(Writer out, Style style) {
+        this.out = out;
+        this.style = style;
+    }
+
+    public void generate(Scene scene) throws IOException {
+        if (style == Style.DATA_TABLE) {
+            generateDataTable(scene);
+            return;
+        }
+        ShapeStore shapes = scene.getShapes();
+        text("import java.awt.*;\n");
+        text("import javax.swing.*;\n\n");
+        text("public class GeneratedDrawing extends JPanel {\n");
+        constructor(scene);
+
+        for (int i = 0; i < shapes.size(); i++) {
+            shape(shapes, i);
+        }
+        endMethod();
+
+        text("\n    @Override\n");
+        text("    protected void paintComponent(Graphics g) {\n");
+        text("        super.paintComponent(g);\n");
+        text("        Graphics2D g2d = (Graphics2D) g;\n");
+        for (int m = 0; m < methodCount; m++) {
+            text("        paint").number(m).text("(g2d);\n");
+        }
+        text("    }\n\n");
+
+        if (usesPackedVertices) {
+            text("    private static int[] ints(String... parts) {\n");
+            text("        String[] values = String.join(\",\", parts).split(\",\");\n");
+            text("        int[] result = new int[values.length];\n");
+            text("        for (int i = 0; i < values.length; i++) {\n");
+            text("            result[i] = Integer.parseInt(values[i]);\n");
+            text("        }\n");
+            text("        return result;\n");
+            text("    }\n\n");
+        }
+        main(scene);
+        flush();
+    }
+
+    private void generateDataTable(Scene scene) throws IOException {
+        text("import java.awt.*;\n");
+        text("import java.nio.ByteBuffer;\n");
+        text("import java.util.Base64;\n");
+        text("import javax.swing.*;\n\n");
+        text("public class GeneratedDrawing extends JPanel {\n");
+        text("    private static final int LINE = 0, RECTANGLE = 1, OVAL = 2, POLYGON = 3, PENCIL = 4;\n\n");
+        text("    // The shapes as big-endian ints in base64. Each one is its type (plus 256 if filled), stroke width,\n");
+        text("    // draw ARGB and fill ARGB if filled, then x1, y1, x2, y2 for lines, rectangles and ovals,\n");
+        text("    // or the point count, all x and all y for polygons and pencil strokes.\n");
+        text("    private static final String[] SCENE = {\n");
+        text("            \"");
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                Base64.getEncoder().wrap(new LiteralOutput()), 8192))) {
+            ShapeStore shapes = scene.getShapes();
+            for (int i = 0; i < shapes.size(); i++) {
+                shapeData(data, shapes, i);
+            }
+        }
+        text("\"\n");
+        text("    };\n");
+        text("    private static final int[] DATA = decode(SCENE);\n\n");
+        constructor(scene);
+
+        text("\n    @Override\n");
+        text("    protected void paintComponent(Graphics g) {\n");
+        text("        super.paintComponent(g);\n");
+        text("        Graphics2D g2d = (Graphics2D) g;\n");
+        text("        int[] x = new int[64], y = new int[64];\n");
+        text("        long color = -1;\n");
+        text("        int stroke = -1;\n");
+        text("        for (int i = 0; i < DATA.length; ) {\n");
+        text("            int type = DATA[i] & 0xFF, strokeWidth = DATA[i + 1], draw = DATA[i + 2];\n");
+        text("            boolean filled = DATA[i] >= 256;\n");
+        text("            int fill = filled ? DATA[i + 3] : 0;\n");
+        text("            i += filled ? 4 : 3;\n");
+        text("            if (stroke != strokeWidth * 2 + (type == PENCIL ? 1 : 0)) {\n");
+        text("                stroke = strokeWidth * 2 + (type == PENCIL ? 1 : 0);\n");
+        text("                g2d.setStroke(type == PENCIL\n");
+        text("                        ? new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND)\n");
+        text("                        : new BasicStroke(strokeWidth));\n");
+        text("            }\n");
+        text("            color = setColor(g2d, color, draw);\n");
+        text("            if (type == POLYGON || type == PENCIL) {\n");
+        text("                int count = DATA[i];\n");
+        text("                if (count > x.length) {\n");
+        text("                    x = new int[count];\n");
+        text("                    y = new int[count];\n");
+        text("                }\n");
+        text("                System.arraycopy(DATA, i + 1, x, 0, count);\n");
+        text("                System.arraycopy(DATA, i + 1 + count, y, 0, count);\n");
+        text("                i += 1 + 2 * count;\n");
+        text("                if (type == PENCIL) {\n");
+        text("                    g2d.drawPolyline(x, y, count);\n");
+        text("                } else {\n");
+        text("                    g2d.drawPolygon(x, y, count);\n");
+        text("                    if (filled) {\n");
+        text("                        color = setColor(g2d, color, fill);\n");
+        text("                        g2d.fillPolygon(x, y, count);\n");
+        text("                    }\n");
+        text("                }\n");
+        text("                continue;\n");
+        text("            }\n");
+        text("            int x1 = DATA[i], y1 = DATA[i + 1], x2 = DATA[i + 2], y2 = DATA[i + 3];\n");
+        text("            int left = Math.min(x1, x2), top = Math.min(y1, y2);\n");
+        text("            int width = Math.abs(x1 - x2), height = Math.abs(y1 - y2);\n");
+        text("            i += 4;\n");
+        text("            if (type == LINE) {\n");
+        text("                g2d.drawLine(x1, y1, x2, y2);\n");
+        text("            } else if (type == RECTANGLE) {\n");
+        text("                g2d.drawRect(left, top, width, height);\n");
+        text("                if (filled) {\n");
+        text("                    color = setColor(g2d, color, fill);\n");
+        text("                    g2d.fillRect(left, top, width, height);\n");
+        text("                }\n");
+        text("            } else if (type == OVAL) {\n");
+        text("                g2d.drawOval(left, top, width, height);\n");
+        text("                if (filled) {\n");
+        text("                    color = setColor(g2d, color, fill);\n");
+        text("                    g2d.fillOval(left, top, width, height);\n");
+        text("                }\n");
+        text("            }\n");
+        text("        }\n");
+        text("    }\n\n");
+
+        text("    // Sets the colour unless g2d already has it; returns the colour now set\n");
+        text("    private static long setColor(Graphics2D g2d, long current, int argb) {\n");
+        text("        if (current != (argb & 0xFFFFFFFFL)) {\n");
+        text("            g2d.setColor(new Color(argb, true));\n");
+        text("        }\n");
+        text("        return argb & 0xFFFFFFFFL;\n");
+        text("    }\n\n");
+
+        text("    private static int[] decode(String[] parts) {\n");
+        text("        byte[] bytes = Base64.getDecoder().decode(String.join(\"\", parts));\n");
+        text("        int[] data = new int[bytes.length / 4];\n");
+        text("        ByteBuffer.wrap(bytes).asIntBuffer().get(data);\n");
+        text("        return data;\n");
+        text("    }\n\n");
+        main(scene);
+        flush();
+    }
+
+    // One shape in the layout described in the generated SCENE comment
+    private static void shapeData(DataOutputStream data, ShapeStore shapes, int i) throws IOException {
+        byte type = shapes.getType(i);
+        boolean filled = shapes.isFilled(i) && type != ShapeData.LINE && type != ShapeData.PENCIL;
+        data.writeInt(type + (filled ? 256 : 0));
+        data.writeInt(shapes.getStrokeWidth(i));
+        data.writeInt(shapes.getDrawArgb(i));
+        if (filled) {
+            data.writeInt(shapes.getFillArgb(i));
+        }
+        if (ShapeData.hasPoints(type)) {
+            int count = shapes.getPointCount(i);
+            data.writeInt(count);
+            for (int p = 0; p < count; p++) {
+                data.writeInt(shapes.getPointX(i, p));
+            }
+            for (int p = 0; p < count; p++) {
+                data.writeInt(shapes.getPointY(i, p));
+            }
+        } else {
+            data.writeInt(shapes.getX1(i));
+            data.writeInt(shapes.getY1(i));
+            data.writeInt(shapes.getX2(i));
+            data.writeInt(shapes.getY2(i));
+        }
+    }
+
+    private void constructor(Scene scene) throws IOException {
+        // Add the background color initialization
+        text("    public GeneratedDrawing() {\n");
+        text("        setBackground(");
+        color(scene.getBackground().getRGB());
+        text(");\n");
+        text("    }\n");
+    }
+
+    private void main(Scene scene) throws IOException {
+        // Add the main method with canvas size and non-resizable window
+        text("    public static void main(String[] args) {\n");
+        text("        JFrame frame = new JFrame(\"Generated Drawing\");\n");
+        text("        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);\n");
+        text("        frame.add(new GeneratedDrawing());\n");
+        text("        frame.setSize(").number(scene.getWidth()).text(", ").number(scene.getHeight()).text(");\n");
+        text("        frame.setResizable(false);\n");
+        text("        frame.setVisible(true);\n");
+        text("    }\n");
+        text("}\n");
+    }
+
+    private void shape(ShapeStore shapes, int i) throws IOException {
+        byte type = shapes.getType(i);
+        int points = shapes.getPointCount(i);
+        boolean inlineVertices = points <= MAX_INLINE_VERTICES;
+        reserve(SET_COLOR_COST * 2 + SET_STROKE_COST + 2 * DRAW_COST
+                + (ShapeData.hasPoints(type) ? POLYGON_COST + (inlineVertices ? VERTEX_COST * points : 0) : 0));
+
+        setColor(shapes.getDrawArgb(i));
+        setStroke(shapes.getStrokeWidth(i), type == ShapeData.PENCIL);
+        switch (type) {
+            case ShapeData.LINE:
+                text("        g2d.drawLine(").number(shapes.getX1(i)).text(", ").number(shapes.getY1(i)).text(", ")
+                        .number(shapes.getX2(i)).text(", ").number(shapes.getY2(i)).text(");\n");
+                break;
+            case ShapeData.RECTANGLE:
+                box("drawRect", shapes, i);
+                if (shapes.isFilled(i)) {
+                    setColor(shapes.getFillArgb(i));
+                    box("fillRect", shapes, i);
+                }
+                break;
+            case ShapeData.OVAL:
+                box("drawOval", shapes, i);
+                if (shapes.isFilled(i)) {
+                    setColor(shapes.getFillArgb(i));
+                    box("fillOval", shapes, i);
+                }
+                break;
+            case ShapeData.POLYGON:
+                // Block scope so every polygon can reuse the same local names
+                text("        {\n");
+                vertices("x", shapes, i, points, true, inlineVertices);
+                vertices("y", shapes, i, points, false, inlineVertices);
+                text("            g2d.drawPolygon(x, y, ").number(points).text(");\n");
+                if (shapes.isFilled(i)) {
+                    setColor(shapes.getFillArgb(i));
+                    text("            g2d.fillPolygon(x, y, ").number(points).text(");\n");
+                }
+                text("        }\n");
+                break;
+            case ShapeData.PENCIL:
+                text("        {\n");
+                vertices("x", shapes, i, points, true, inlineVertices);
+                vertices("y", shapes, i, points, false, inlineVertices);
+                text("            g2d.drawPolyline(x, y, ").number(points).text(");\n");
+                text("        }\n");
+                break;
+        }
+    }
+
+    private void vertices(String name, ShapeStore shapes, int i, int points, boolean xs, boolean inline)
+            throws IOException {
+        text("            int[] ").text(name).text(inline ? " = {" : " = ints(\"");
+        int literalLength = 0;
+        for (int p = 0; p < points; p++) {
+            if (p > 0) {
+                if (inline) {
+                    text(", ");
+                } else if (literalLength > MAX_LITERAL_LENGTH) {
+                    // Split before the class-file limit of 65535 bytes per string constant
+                    text("\", \"");
+                    literalLength = 0;
+                } else {
+                    text(",");
+                }
+            }
+            number(xs ? shapes.getPointX(i, p) : shapes.getPointY(i, p));
+            literalLength += 12; // Upper bound for a separator and an int
+        }
+        text(inline ? "};\n" : "\");\n");
+        usesPackedVertices |= !inline;
+    }
+
+    private void box(String call, ShapeStore shapes, int i) throws IOException {
+        int x1 = shapes.getX1(i), y1 = shapes.getY1(i), x2 = shapes.getX2(i), y2 = shapes.getY2(i);
+        text("        g2d.").text(call).text("(").number(Math.min(x1, x2)).text(", ").number(Math.min(y1, y2)).text(", ")
+                .number(Math.abs(x1 - x2)).text(", ").number(Math.abs(y1 - y2)).text(");\n");
+    }
+
+    private void setColor(int argb) throws IOException {
+        if (currentColor != (argb & 0xFFFFFFFFL)) {
+            text("        g2d.setColor(");
+            color(argb);
+            text(");\n");
+            currentColor = argb & 0xFFFFFFFFL;
+        }
+    }
+
+    private void setStroke(int width, boolean round) throws IOException {
+        int stroke = width * 2 + (round ? 1 : 0);
+        if (currentStroke != stroke) {
+            text("        g2d.setStroke(new BasicStroke(").number(width);
+            text(round ? ", BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));\n" : "));\n");
+            currentStroke = stroke;
+        }
+    }
+
+    private void color(int argb) throws IOException {
+        int alpha = argb >>> 24;
+        text("new Color(").number((argb >> 16) & 0xFF).text(", ").number((argb >> 8) & 0xFF).text(", ").number(argb & 0xFF);
+        if (alpha != 0xFF) {
+            text(", ").number(alpha);
+        }
+        text(")");
+    }
+
+    // Starts a new helper method when the next statements would push the current one over budget
+    private void reserve(int cost) throws IOException {
+        if (inMethod && methodBytes + cost > METHOD_BUDGET) {
+            endMethod();
+        }
+        if (!inMethod) {
+            text("\n    private static void paint").number(methodCount).text("(Graphics2D g2d) {\n");
+            methodCount++;
+            methodBytes = 0;
+            inMethod = true;
+        }
+        methodBytes += cost;
+    }
+
+    private void endMethod() throws IOException {
+        if (inMethod) {
+            text("    }\n");
+            inMethod = false;
+        }
+    }
+
+    private CodeGenerator text(String s) throws IOException {
+        int length = s.length();
+        if (position + length > buffer.length) {
+            flush();
+            if (length > buffer.length) {
+                out.write(s);
+                return this;
+            }
+        }
+        s.getChars(0, length, buffer, position);
+        position += length;
+        return this;
+    }
+
+    // Writes the decimal digits straight into the buffer instead of going through String.format
+    private CodeGenerator number(int value) throws IOException {
+        if (position + 11 > buffer.length) {
+            flush();
+        }
+        long v = value;
+        if (v < 0) {
+            buffer[position++] = '-';
+            v = -v;
+        }
+        int start = position;
+        do {
+            buffer[position++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int left = start, right = position - 1; left < right; left++, right--) {
+            char c = buffer[left];
+            buffer[left] = buffer[right];
+            buffer[right] = c;
+        }
+        return this;
+    }
+
+    private void character(char c) throws IOException {
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = c;
+    }
+
+    // Receives the base64 text of the scene data and splits it into string constants below the
+    // class-file limit of 65535 bytes each
+    private class LiteralOutput extends OutputStream {
+        private int literalLength = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (literalLength == MAX_LITERAL_LENGTH) {
+                text("\",\n            \"");
+                literalLength = 0;
+            }
+            character((char) b);
+            literalLength++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (literalLength == MAX_LITERAL_LENGTH) {
+                    text("\",\n            \"");
+                    literalLength = 0;
+                }
+                if (position == buffer.length) {
+                    CodeGenerator.this.flush(); // Not OutputStream.flush(), which does nothing
+                }
+                int count = Math.min(length, Math.min(MAX_LITERAL_LENGTH - literalLength, buffer.length - position));
+                for (int i = 0; i < count; i++) {
+                    buffer[position++] = (char) bytes[offset + i]; // Base64 is plain ASCII
+                }
+                literalLength += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,88 @@
+package javapaint;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Undo/redo history that records operations instead of copies of the whole scene.
+// Undo and redo are O(1); the oldest entries are evicted once the memory budget is exceeded.
+class EditHistory {
+
+    static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    interface Edit {
+        void undo();
+
+        void redo();
+
+        // Rough heap footprint of the edit, used for the memory budget
+        long estimatedBytes();
+    }
+
+    private final Deque<Edit> undoStack = new ArrayDeque<>();
+    private final Deque<Edit> redoStack = new ArrayDeque<>();
+    private final long budgetBytes;
+    private long usedBytes = 0;
+
+    EditHistory() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    EditHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Records an edit that has already been applied; clears anything that could be redone
+    public void push(Edit edit) {
+        while (!redoStack.isEmpty()) {
+            usedBytes -= redoStack.pop().estimatedBytes();
+        }
+        undoStack.push(edit);
+        usedBytes += edit.estimatedBytes();
+        evictOldest();
+    }
+
+    public boolean undo() {
+        if (undoStack.isEmpty()) {
+            return false;
+        }
+        Edit edit = undoStack.pop();
+        edit.undo();
+        redoStack.push(edit);
+        return true;
+    }
+
+    public boolean redo() {
+        if (redoStack.isEmpty()) {
+            return false;
+        }
+        Edit edit = redoStack.pop();
+        edit.redo();
+        undoStack.push(edit);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        usedBytes = 0;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private void evictOldest() {
+        // Always keep the most recent edit so a single huge operation can still be undone
+        while (usedBytes > budgetBytes && undoStack.size() > 1) {
+            usedBytes -= undoStack.removeLast().estimatedBytes();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package javapaint;
+
+import java.util.Arrays;
+
+// Growable array of primitive ints, used where a List<Integer> would box every element
+class IntList {
+    private int[] values;
+    private int size = 0;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Drops the last count values
+    public void removeLast(int count) {
+        size -= count;
+    }
+
+    // Removes the first occurrence searching from the end; order of the remaining values is not kept
+    public boolean removeValue(int value) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (values[i] == value) {
+                values[i] = values[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    // Backing array; only the first size() entries are meaningful
+    public int[] array() {
+        return values;
+    }
+}
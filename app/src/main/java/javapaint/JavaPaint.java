@@ -0,0 +1,1123 @@
+package javapaint;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class JavaPaint extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    private String shapeType = "Line";
+    private Color drawColor = Color.BLACK;
+    private Color fillColor = Color.WHITE;
+    private Color canvasBackgroundColor = Color.WHITE;
+    private int strokeWidth = 1;
+    private EditHistory history = new EditHistory(Long.getLong("javapaint.historyBudget", EditHistory.DEFAULT_BUDGET_BYTES));
+    private ShapeStore shapes = new ShapeStore();
+    private ShapeData tempShape = null;
+    private ShapeData previewShape; // Reused for every drag preview so dragging does not allocate
+    private Point startPoint, endPoint;
+
+    private double scale = 1.0;
+    private double minScale = 0.5, maxScale = 5.0;
+    private Point canvasOrigin = new Point(0, 0);
+    private boolean draggingCanvas = false;
+    private Point lastMousePoint;
+
+    private static final int DEFAULT_CANVAS_WIDTH = 800, DEFAULT_CANVAS_HEIGHT = 600;
+    private int canvasWidth = DEFAULT_CANVAS_WIDTH;
+    private int canvasHeight = DEFAULT_CANVAS_HEIGHT;
+
+    private ArrayList<Point> polygonPoints = new ArrayList<>();
+
+    // Samples of the pencil stroke being drawn. Each frame only the segments added since the last one
+    // are drawn onto the overlay, which is in device pixels of the view it was drawn for.
+    private static final int PENCIL_SMOOTHING_PASSES = 2;
+    private static final double PENCIL_TOLERANCE = 0.75;
+    private boolean drawingPencil = false, pencilPending = false;
+    private IntList pencilXs = new IntList(1024), pencilYs = new IntList(1024);
+    private int pencilDrawnCount = 0;
+    private BufferedImage pencilOverlay;
+    private double overlayScale, overlayDeviceScale;
+    private Point overlayOrigin = new Point();
+    private boolean fillShape = false; // To manage fill option
+
+    // The committed scene is rasterized on a render thread; the EDT shows the latest finished frame.
+    // sceneVersion changes with every edit except appending a shape, which the EDT can draw over an
+    // older frame by itself.
+    private SceneRenderThread sceneRenderThread;
+    private SceneRenderThread.Frame sceneFrame;
+    private long sceneVersion = 0;
+    private Rectangle requestedRegion = new Rectangle();
+    private double requestedScale, requestedDeviceScale;
+    private boolean requestedHighQuality;
+
+    // Frames render fast while the user drags, pans or zooms, and are refined once input pauses
+    private static final int IDLE_REFINE_DELAY = 300;
+    private boolean interacting = false;
+    private Timer idleTimer;
+    private IntList visibleShapes = new IntList();
+    private ShapeStore.Scratch sceneScratch = new ShapeStore.Scratch();
+    private Rectangle visibleRegion = new Rectangle();
+    private GraphicsConfiguration sceneConfiguration;
+    private double deviceScale = 1.0;
+
+    private static final Font VERTEX_LABEL_FONT = new Font("Arial", Font.BOLD, 12);
+    private String[] vertexLabels = new String[0];
+
+    // Canvas-space areas reused when computing which part of the view a drag or click touched
+    private Rectangle dirtyRegion = new Rectangle();
+    private Rectangle previewBounds = new Rectangle();
+
+    private TileRenderer tileRenderer = new TileRenderer();
+
+    private static final int GENERATED_CODE_PREVIEW_LIMIT = 5000;
+    private boolean sceneDirty = true;
+
+    private JPanel canvas;
+
+    // Pointer and wheel input gathered between frames; the frame timer applies it once per display refresh
+    private Timer frameTimer;
+    private GraphicsConfiguration frameConfiguration;
+    private int frameMillis = 16;
+    private boolean dragPending = false, panPending = false;
+    private Point pendingPointer = new Point();
+    private int pendingWheelSteps = 0;
+    private Point pendingWheelPoint = new Point();
+
+    // Every committed change is journaled here and replayed on the next start; null if autosave is unavailable
+    private static final Path SESSION_DIRECTORY = Paths.get(System.getProperty("javapaint.sessionDir",
+            Paths.get(System.getProperty("user.home"), ".javapaint").toString()));
+    private SessionJournal journal;
+
+    private RenderMetrics renderMetrics = new RenderMetrics();
+    private boolean hudVisible = false;
+    private Timer hudTimer;
+    private static final Font HUD_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Rectangle HUD_BOUNDS = new Rectangle(8, 8, 560, 44);
+
+    public JavaPaint() {
+        super("Java Paint with Live Drawing");
+        setSize(1280, 720);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        // Drawing panel
+        canvas = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                long paintStart = System.nanoTime();
+                PaintEvent event = new PaintEvent();
+                event.begin();
+                super.paintComponent(g);
+                Graphics2D g2d = (Graphics2D) g;
+                SceneRenderer.setQuality(g2d, !interacting);
+                AffineTransform screenTransform = g2d.getTransform();
+                boolean rendered = false;
+
+                // Blit the latest scene frame for the visible part of the canvas, sized in device pixels so HiDPI screens stay sharp
+                Rectangle visible = visibleRegion;
+                int left = Math.max(0, canvasOrigin.x), top = Math.max(0, canvasOrigin.y);
+                int right = Math.min(getWidth(), canvasOrigin.x + (int) Math.ceil(canvasWidth * scale));
+                int bottom = Math.min(getHeight(), canvasOrigin.y + (int) Math.ceil(canvasHeight * scale));
+                visible.setBounds(left - canvasOrigin.x, top - canvasOrigin.y, right - left, bottom - top);
+                if (!visible.isEmpty()) {
+                    // The device transform only changes when the window moves to another screen
+                    GraphicsConfiguration configuration = getGraphicsConfiguration();
+                    if (configuration != sceneConfiguration) {
+                        sceneConfiguration = configuration;
+                        deviceScale = configuration != null ? configuration.getDefaultTransform().getScaleX() : 1.0;
+                    }
+                    requestSceneFrame(visible);
+                    SceneRenderThread.Frame next = sceneRenderThread.takeFrame();
+                    if (next != null) {
+                        if (sceneFrame != null) {
+                            sceneRenderThread.recycle(sceneFrame);
+                        }
+                        sceneFrame = next;
+                        rendered = true;
+                    }
+                    paintSceneFrame(g2d, visible);
+                }
+
+                if (drawingPencil && pencilOverlay != null) {
+                    g2d.drawImage(pencilOverlay, 0, 0, getWidth(), getHeight(), null);
+                }
+
+                g2d.scale(scale, scale);
+                g2d.translate(canvasOrigin.x / scale, canvasOrigin.y / scale);
+
+                if (!visible.isEmpty()) {
+                    paintNewShapes(g2d);
+                }
+
+                if (tempShape != null) {
+                    tempShape.drawShape(g2d);
+                }
+
+                // Draw polygon points
+                if (shapeType.equals("Polygon")) {
+                    g2d.setColor(Color.RED);
+                    g2d.setFont(VERTEX_LABEL_FONT);
+                    for (int i = 0; i < polygonPoints.size(); i++) {
+                        Point p = polygonPoints.get(i);
+                        g2d.fillOval(p.x - 4, p.y - 4, 8, 8);
+                        g2d.drawString(vertexLabel(i), p.x + 5, p.y - 5);
+                    }
+                }
+
+                int drawn = rendered ? sceneFrame.getDrawnCount() : 0;
+                int skipped = rendered ? sceneFrame.getSkippedCount() : 0;
+                int cached = rendered || visible.isEmpty() || sceneFrame == null ? 0 : sceneFrame.getDrawnCount();
+                renderMetrics.painted(paintStart, System.nanoTime(), drawn, skipped, cached);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sceneCached = !rendered;
+                    event.shapesDrawn = drawn;
+                    event.shapesSkipped = skipped;
+                    event.scale = scale;
+                    Rectangle clip = g.getClipBounds();
+                    event.clipWidth = clip != null ? clip.width : getWidth();
+                    event.clipHeight = clip != null ? clip.height : getHeight();
+                    event.commit();
+                }
+
+                if (hudVisible) {
+                    g2d.setTransform(screenTransform);
+                    paintHud(g2d);
+                }
+            }
+
+            @Override
+            public void repaint(long tm, int x, int y, int width, int height) {
+                // Every repaint overload ends up here
+                renderMetrics.repaintRequested();
+                super.repaint(tm, x, y, width, height);
+            }
+
+            @Override
+            public Dimension getPreferredSize() {
+                return new Dimension(canvasWidth, canvasHeight);
+            }
+        };
+        sceneRenderThread = new SceneRenderThread(canvas::repaint);
+
+        InputMap inputMap = canvas.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actionMap = canvas.getActionMap();
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        actionMap.put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                undo();
+            }
+        });
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        actionMap.put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                redo();
+            }
+        });
+
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleHud");
+        actionMap.put("toggleHud", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setHudVisible(!hudVisible);
+            }
+        });
+        canvas.setBackground(Color.DARK_GRAY);
+        canvas.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                renderMetrics.inputReceived(System.nanoTime());
+                applyPendingInput();
+                Point clickPoint = new Point(
+                        (int) ((e.getX() - canvasOrigin.x) / scale),
+                        (int) ((e.getY() - canvasOrigin.y) / scale)
+                );
+
+                // Ensure the clickPoint is within the canvas bounds before drawing
+                if (clickPoint.x >= 0 && clickPoint.x <= canvasWidth &&
+                        clickPoint.y >= 0 && clickPoint.y <= canvasHeight) {
+                    startPoint = clickPoint;
+                }
+
+                lastMousePoint = e.getPoint();
+
+                if (SwingUtilities.isMiddleMouseButton(e)) {
+                    draggingCanvas = true; // Pan the canvas
+                } else if (shapeType.equals("Pencil") && SwingUtilities.isLeftMouseButton(e) && startPoint != null) {
+                    drawingPencil = true;
+                    pencilXs.clear();
+                    pencilYs.clear();
+                    pencilDrawnCount = 0;
+                    clearPencilOverlay();
+                    addPencilSample(clickPoint.x, clickPoint.y);
+                } else if (shapeType.equals("Polygon") && SwingUtilities.isLeftMouseButton(e) && startPoint != null) {
+                    polygonPoints.add(clickPoint);
+                    repaintVertex(polygonPoints.size() - 1);
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                // The shape ends where the last drag left it, including a drag not yet shown
+                applyPendingInput();
+
+                if (drawingPencil && SwingUtilities.isLeftMouseButton(e)) {
+                    commitPencil();
+                    startPoint = null;
+                    canvas.repaint();
+                } else if (SwingUtilities.isLeftMouseButton(e) && startPoint != null) {
+                    // When releasing after drawing
+                    endPoint = tempShape != null ? new Point(tempShape.getEnd()) : startPoint;
+
+                    if (!shapeType.equals("Polygon")) {
+                        addShape(new ShapeData(startPoint, endPoint, shapeType, drawColor, fillShape ? fillColor : null, strokeWidth));
+                        tempShape = null;
+                    }
+
+                    startPoint = null;
+                    endPoint = null;
+                    canvas.repaint();
+                }
+
+                draggingCanvas = false;
+            }
+        });
+
+        canvas.addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                renderMetrics.inputReceived(System.nanoTime());
+                if (draggingCanvas) {
+                    panPending = true;
+                } else if (drawingPencil) {
+                    // Every sample is kept, only the drawing waits for the next frame
+                    addPencilSample((int) ((e.getX() - canvasOrigin.x) / scale), (int) ((e.getY() - canvasOrigin.y) / scale));
+                    return;
+                } else if (SwingUtilities.isLeftMouseButton(e) && startPoint != null && !shapeType.equals("Polygon")) {
+                    dragPending = true;
+                } else {
+                    return;
+                }
+                pendingPointer.setLocation(e.getX(), e.getY());
+                scheduleFrame();
+            }
+        });
+
+        canvas.addMouseWheelListener(e -> {
+            renderMetrics.inputReceived(System.nanoTime());
+            // Notches arriving within one frame add up to a single zoom step
+            pendingWheelSteps += Integer.signum(e.getWheelRotation());
+            pendingWheelPoint.setLocation(e.getX(), e.getY());
+            scheduleFrame();
+        });
+
+
+        add(canvas, BorderLayout.CENTER);
+
+        // Tools panel
+        JPanel toolsPanel = new JPanel();
+        toolsPanel.setBackground(new Color(181, 181, 181));
+        toolsPanel.setForeground(Color.WHITE);
+
+        JButton donePolygonButton = new JButton("Done");
+        donePolygonButton.setBackground(Color.DARK_GRAY);
+        donePolygonButton.setForeground(Color.WHITE);
+        donePolygonButton.setVisible(false);  // Initially hidden
+
+        donePolygonButton.addActionListener(e -> {
+            if (polygonPoints.size() > 2) {
+                addShape(new ShapeData(new ArrayList<>(polygonPoints), drawColor, fillShape ? fillColor : null, strokeWidth));
+                polygonPoints.clear();
+                canvas.repaint();
+            }
+        });
+        toolsPanel.add(donePolygonButton);
+
+        String[] shapesOptions = {"Line", "Rectangle", "Oval", "Polygon", "Pencil"};
+        JComboBox<String> shapesCombo = new JComboBox<>(shapesOptions);
+        shapesCombo.setBackground(Color.DARK_GRAY);
+        shapesCombo.setForeground(Color.WHITE);
+        shapesCombo.addActionListener(e -> {
+            shapeType = (String) shapesCombo.getSelectedItem();
+            if (shapeType.equals("Polygon")) {
+                polygonPoints.clear(); // Clear points when switching to polygon
+            }
+            canvas.repaint();
+        });
+        toolsPanel.add(new JLabel("Shape:", JLabel.RIGHT));
+        toolsPanel.add(shapesCombo);
+
+        shapesCombo.addActionListener(e -> {
+            shapeType = (String) shapesCombo.getSelectedItem();
+
+            if (shapeType.equals("Polygon")) {
+                polygonPoints.clear(); // Clear points when switching to polygon
+                donePolygonButton.setVisible(true);  // Show the button
+            } else {
+                donePolygonButton.setVisible(false); // Hide the button for other shapes
+            }
+
+            canvas.repaint();
+        });
+
+        JButton colorButton = new JButton("Choose Color");
+        colorButton.addActionListener(e -> {
+            // Cancelling the chooser returns null; keep the current colour so the pencil overlay and
+            // the committed shape agree
+            Color newDrawColor = JColorChooser.showDialog(null, "Choose Draw Color", drawColor);
+            if (newDrawColor != null) {
+                drawColor = newDrawColor;
+            }
+        });
+        colorButton.setBackground(Color.DARK_GRAY);
+        colorButton.setForeground(Color.WHITE);
+        toolsPanel.add(colorButton);
+
+        JButton fillColorButton = new JButton("Choose Fill Color");
+        fillColorButton.addActionListener(e -> {
+            Color newFillColor = JColorChooser.showDialog(null, "Choose Fill Color", fillColor);
+            if (newFillColor != null) {
+                fillColor = newFillColor;
+            }
+        });
+        fillColorButton.setBackground(Color.DARK_GRAY);
+        fillColorButton.setForeground(Color.WHITE);
+        toolsPanel.add(fillColorButton);
+
+        JButton backgroundColorButton = new JButton("Change Canvas Color");
+        backgroundColorButton.setBackground(Color.DARK_GRAY);
+        backgroundColorButton.setForeground(Color.WHITE);
+        backgroundColorButton.addActionListener(e -> {
+            Color newBackgroundColor = JColorChooser.showDialog(null, "Choose Canvas Background Color", canvasBackgroundColor);
+            if (newBackgroundColor != null && !newBackgroundColor.equals(canvasBackgroundColor)) {
+                history.push(new BackgroundEdit(canvasBackgroundColor, newBackgroundColor));
+                setCanvasBackground(newBackgroundColor);
+            }
+        });
+        toolsPanel.add(backgroundColorButton);
+
+        JCheckBox fillCheckBox = new JCheckBox("Fill Shape");
+        fillCheckBox.setBackground(Color.DARK_GRAY);
+        fillCheckBox.setForeground(Color.WHITE);
+        fillCheckBox.addActionListener(e -> fillShape = fillCheckBox.isSelected());
+        toolsPanel.add(fillCheckBox);
+
+        JSpinner strokeWidthSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 10, 1));
+        strokeWidthSpinner.addChangeListener(e -> strokeWidth = (Integer) strokeWidthSpinner.getValue());
+        toolsPanel.add(new JLabel("Stroke Width:", JLabel.RIGHT));
+        toolsPanel.add(strokeWidthSpinner);
+
+        JTextField widthField = new JTextField("800", 5);
+        JTextField heightField = new JTextField("600", 5);
+        JButton setSizeButton = new JButton("Set Canvas Size");
+        setSizeButton.setBackground(Color.DARK_GRAY);
+        setSizeButton.setForeground(Color.WHITE);
+        setSizeButton.addActionListener(e -> {
+            int newWidth = Integer.parseInt(widthField.getText());
+            int newHeight = Integer.parseInt(heightField.getText());
+            if (newWidth != canvasWidth || newHeight != canvasHeight) {
+                history.push(new ResizeEdit(canvasWidth, canvasHeight, newWidth, newHeight));
+                setCanvasSize(newWidth, newHeight);
+            }
+        });
+        toolsPanel.add(new JLabel("Width:"));
+        toolsPanel.add(widthField);
+        toolsPanel.add(new JLabel("Height:"));
+        toolsPanel.add(heightField);
+        toolsPanel.add(setSizeButton);
+
+        JButton undoButton = new JButton("Undo (Ctrl+Z)");
+        undoButton.addActionListener(e -> undo());
+        undoButton.setBackground(Color.DARK_GRAY);
+        undoButton.setForeground(Color.WHITE);
+        toolsPanel.add(undoButton);
+
+        JButton redoButton = new JButton("Redo (Ctrl+Y)");
+        redoButton.addActionListener(e -> redo());
+        redoButton.setBackground(Color.DARK_GRAY);
+        redoButton.setForeground(Color.WHITE);
+        toolsPanel.add(redoButton);
+
+        JButton generateButton = new JButton("Generate Code");
+        generateButton.addActionListener(e -> showGeneratedCode());
+        generateButton.setBackground(Color.DARK_GRAY);
+        generateButton.setForeground(Color.WHITE);
+        toolsPanel.add(generateButton);
+
+        JButton newButton = new JButton("New");
+        newButton.addActionListener(e -> newScene());
+        newButton.setBackground(Color.DARK_GRAY);
+        newButton.setForeground(Color.WHITE);
+        toolsPanel.add(newButton);
+
+        JButton saveButton = new JButton("Save");
+        saveButton.addActionListener(e -> saveScene());
+        saveButton.setBackground(Color.DARK_GRAY);
+        saveButton.setForeground(Color.WHITE);
+        toolsPanel.add(saveButton);
+
+        JButton openButton = new JButton("Open");
+        openButton.addActionListener(e -> openScene());
+        openButton.setBackground(Color.DARK_GRAY);
+        openButton.setForeground(Color.WHITE);
+        toolsPanel.add(openButton);
+
+        JButton exportButton = new JButton("Export PNG");
+        exportButton.addActionListener(e -> exportPng());
+        exportButton.setBackground(Color.DARK_GRAY);
+        exportButton.setForeground(Color.WHITE);
+        toolsPanel.add(exportButton);
+
+        JButton exportSvgButton = new JButton("Export SVG");
+        exportSvgButton.addActionListener(e -> exportSvg());
+        exportSvgButton.setBackground(Color.DARK_GRAY);
+        exportSvgButton.setForeground(Color.WHITE);
+        toolsPanel.add(exportSvgButton);
+
+        add(toolsPanel, BorderLayout.SOUTH);
+
+        openJournal();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (journal != null) {
+                    journal.close();
+                }
+            }
+        });
+
+        setVisible(true);
+    }
+
+    // Offers to restore the drawing from the last session, then starts journaling this one
+    private void openJournal() {
+        try {
+            SessionJournal session = SessionJournal.open(SESSION_DIRECTORY,
+                    new Scene(shapes, canvasBackgroundColor, canvasWidth, canvasHeight), this::sessionSnapshot,
+                    reason -> SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Autosave stopped: " + reason + "\nChanges from now on are not kept; use Save to keep the drawing.",
+                            "Autosave", JOptionPane.WARNING_MESSAGE)));
+            Scene recovered = session.getRecoveredScene();
+            boolean restore = recovered != null && JOptionPane.showConfirmDialog(this,
+                    "Restore the drawing from your last session (" + recovered.getShapes().size() + " shapes)?\n"
+                            + "No starts with an empty canvas and discards it.",
+                    "Restore Session", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE) == JOptionPane.YES_OPTION;
+            if (restore) {
+                setScene(recovered);
+            }
+            journal = session;
+            if (recovered != null && !restore) {
+                journal.sceneReplaced(); // The new session starts from the empty canvas
+            }
+        } catch (IOException e) {
+            System.err.println("Autosave disabled: " + e.getMessage());
+        }
+    }
+
+    // Called on the EDT; the snapshot costs O(1) and is written out by the journal's own thread
+    private Scene sessionSnapshot() {
+        return new Scene(shapes.snapshot(), canvasBackgroundColor, canvasWidth, canvasHeight);
+    }
+
+    // Starts the frame timer if it is idle. The first frame after a pause runs as soon as the events
+    // already queued are handled, later ones follow at the refresh rate until input stops.
+    private void scheduleFrame() {
+        if (frameTimer == null) {
+            frameTimer = new Timer(0, e -> {
+                if (!applyPendingInput()) {
+                    frameTimer.stop();
+                }
+            });
+            frameTimer.setInitialDelay(0);
+        }
+        if (!frameTimer.isRunning()) {
+            frameTimer.setDelay(frameInterval());
+            frameTimer.start();
+        }
+    }
+
+    // Milliseconds per frame of the screen the canvas is on; only looked up again after moving screens
+    private int frameInterval() {
+        GraphicsConfiguration configuration = canvas.getGraphicsConfiguration();
+        if (configuration != null && configuration != frameConfiguration) {
+            frameConfiguration = configuration;
+            int refreshRate = configuration.getDevice().getDisplayMode().getRefreshRate();
+            frameMillis = refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? 16 : Math.max(1, Math.round(1000f / refreshRate));
+        }
+        return frameMillis;
+    }
+
+    // Applies the input gathered since the last frame; returns false if there was none
+    private boolean applyPendingInput() {
+        boolean applied = dragPending || panPending || pencilPending || pendingWheelSteps != 0;
+        if (panPending) {
+            // Pan the canvas in any direction
+            canvasOrigin.x += pendingPointer.x - lastMousePoint.x;
+            canvasOrigin.y += pendingPointer.y - lastMousePoint.y;
+            lastMousePoint.setLocation(pendingPointer);
+            panPending = false;
+            canvas.repaint();
+        }
+        if (dragPending) {
+            dragPending = false;
+            updatePreview(pendingPointer.x, pendingPointer.y);
+        }
+        if (pendingWheelSteps != 0) {
+            zoom(pendingWheelSteps, pendingWheelPoint);
+            pendingWheelSteps = 0;
+        }
+        if (drawingPencil) {
+            drawPencilSegments();
+        }
+        if (applied) {
+            noteInteraction();
+        }
+        return applied;
+    }
+
+    // Switches to fast rendering until no input has arrived for IDLE_REFINE_DELAY milliseconds
+    private void noteInteraction() {
+        if (idleTimer == null) {
+            idleTimer = new Timer(IDLE_REFINE_DELAY, e -> {
+                interacting = false;
+                canvas.repaint(); // Requests the refined frame
+            });
+            idleTimer.setRepeats(false);
+        }
+        interacting = true;
+        idleTimer.restart();
+    }
+
+    private void addPencilSample(int x, int y) {
+        x = Math.max(0, Math.min(x, canvasWidth));
+        y = Math.max(0, Math.min(y, canvasHeight));
+        int last = pencilXs.size() - 1;
+        if (last >= 0 && pencilXs.get(last) == x && pencilYs.get(last) == y) {
+            return; // Several mouse events can map to the same canvas point when zoomed out
+        }
+        pencilXs.add(x);
+        pencilYs.add(y);
+        pencilPending = true;
+        scheduleFrame();
+    }
+
+    private void clearPencilOverlay() {
+        if (pencilOverlay != null) {
+            Graphics2D g2d = pencilOverlay.createGraphics();
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, pencilOverlay.getWidth(), pencilOverlay.getHeight());
+            g2d.dispose();
+        }
+    }
+
+    // Draws the segments added since the last frame onto the overlay and repaints just their area,
+    // so a long stroke costs the same per sample as a short one. Zooming or panning mid-stroke redraws it all.
+    private void drawPencilSegments() {
+        int width = Math.max(1, (int) Math.ceil(canvas.getWidth() * deviceScale));
+        int height = Math.max(1, (int) Math.ceil(canvas.getHeight() * deviceScale));
+        if (pencilOverlay == null || pencilOverlay.getWidth() != width || pencilOverlay.getHeight() != height) {
+            pencilOverlay = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            pencilDrawnCount = 0;
+        } else if (overlayScale != scale || overlayDeviceScale != deviceScale || !overlayOrigin.equals(canvasOrigin)) {
+            clearPencilOverlay();
+            pencilDrawnCount = 0;
+        }
+        pencilPending = false;
+        int count = pencilXs.size();
+        if (pencilDrawnCount == count) {
+            return;
+        }
+        overlayScale = scale;
+        overlayDeviceScale = deviceScale;
+        overlayOrigin.setLocation(canvasOrigin);
+
+        Graphics2D g2d = pencilOverlay.createGraphics();
+        g2d.scale(deviceScale, deviceScale);
+        g2d.translate(canvasOrigin.x, canvasOrigin.y);
+        g2d.scale(scale, scale);
+        g2d.setColor(drawColor);
+        g2d.setStroke(ShapeData.stroke(ShapeData.PENCIL, strokeWidth));
+
+        // Start at the last point already drawn so the new segments join up with it
+        int from = Math.max(0, pencilDrawnCount - 1);
+        int x = pencilXs.get(from), y = pencilYs.get(from);
+        dirtyRegion.setBounds(x, y, 0, 0);
+        if (count == 1) {
+            g2d.drawLine(x, y, x, y);
+        }
+        for (int i = from + 1; i < count; i++) {
+            int nextX = pencilXs.get(i), nextY = pencilYs.get(i);
+            g2d.drawLine(x, y, nextX, nextY);
+            dirtyRegion.add(nextX, nextY);
+            x = nextX;
+            y = nextY;
+        }
+        g2d.dispose();
+        pencilDrawnCount = count;
+
+        int pad = ShapeData.boundsPad(ShapeData.PENCIL, strokeWidth);
+        dirtyRegion.grow(pad, pad);
+        repaintCanvasRegion(dirtyRegion);
+    }
+
+    // Smooths and decimates the samples into a committed pencil shape
+    private void commitPencil() {
+        drawingPencil = false;
+        pencilPending = false;
+        int count = pencilXs.size();
+        if (count == 0) {
+            return;
+        }
+        int[] xs = Arrays.copyOf(pencilXs.array(), count), ys = Arrays.copyOf(pencilYs.array(), count);
+        PolylineSimplifier.smooth(xs, ys, count, PENCIL_SMOOTHING_PASSES);
+        int[] keptX = new int[Math.max(2, count)], keptY = new int[Math.max(2, count)];
+        int kept = PolylineSimplifier.simplify(xs, ys, 0, count, PENCIL_TOLERANCE, keptX, keptY);
+        if (kept == 1) {
+            // A click without movement; a polyline needs two points to leave a dot
+            keptX[1] = keptX[0];
+            keptY[1] = keptY[0];
+            kept = 2;
+        }
+        addShape(new ShapeData(ShapeData.PENCIL, Arrays.copyOf(keptX, kept), Arrays.copyOf(keptY, kept), kept,
+                drawColor, null, strokeWidth));
+    }
+
+    private void updatePreview(int mouseX, int mouseY) {
+        if (startPoint == null) {
+            return;
+        }
+        // Adjust the end point relative to the panned and scaled canvas
+        int endX = (int) ((mouseX - canvasOrigin.x) / scale);
+        int endY = (int) ((mouseY - canvasOrigin.y) / scale);
+
+        // Ensure drawing is clamped to the canvas bounds
+        endX = Math.max(0, Math.min(endX, canvasWidth));
+        endY = Math.max(0, Math.min(endY, canvasHeight));
+
+        // Update the temporary shape in place while dragging
+        if (previewShape == null) {
+            previewShape = new ShapeData(new Point(), new Point(), shapeType, drawColor, null, strokeWidth);
+        }
+        boolean hadPreview = tempShape != null;
+        if (hadPreview) {
+            tempShape.getBounds(previewBounds);
+        }
+        previewShape.update(startPoint, endX, endY, shapeType, drawColor, fillShape ? fillColor : null, strokeWidth);
+        tempShape = previewShape;
+
+        // Only the area covered by the old and the new preview needs repainting
+        tempShape.getBounds(dirtyRegion);
+        if (hadPreview) {
+            dirtyRegion.add(previewBounds);
+        }
+        repaintCanvasRegion(dirtyRegion);
+    }
+
+    // Zooms by 1.1 per step, negative steps zooming in, keeping the canvas point under the mouse in place
+    private void zoom(int steps, Point mousePoint) {
+        double newScale = Math.max(minScale, Math.min(maxScale, scale * Math.pow(1.1, -steps)));
+        if (newScale != scale) {
+            int zoomOriginX = (int) ((mousePoint.x - canvasOrigin.x) / scale);
+            int zoomOriginY = (int) ((mousePoint.y - canvasOrigin.y) / scale);
+            scale = newScale;
+
+            canvasOrigin.x = mousePoint.x - (int) (zoomOriginX * scale);
+            canvasOrigin.y = mousePoint.y - (int) (zoomOriginY * scale);
+
+            // A new frame is requested on the next paint; the old one is stretched until it arrives
+            canvas.repaint();
+        }
+    }
+
+    // Counters and timings of the canvas paint loop, e.g. for asserting render budgets in tests
+    public RenderMetrics getRenderMetrics() {
+        return renderMetrics;
+    }
+
+    private void setHudVisible(boolean visible) {
+        hudVisible = visible;
+        // Paints are often clipped to a small dirty area, so the overlay refreshes itself
+        if (hudTimer == null) {
+            hudTimer = new Timer(500, e -> canvas.repaint(HUD_BOUNDS));
+        }
+        if (visible) {
+            hudTimer.start();
+        } else {
+            hudTimer.stop();
+        }
+        canvas.repaint(HUD_BOUNDS);
+    }
+
+    private void paintHud(Graphics2D g2d) {
+        RenderMetrics.Snapshot metrics = renderMetrics.snapshot();
+        g2d.setColor(new Color(0, 0, 0, 160));
+        g2d.fill(HUD_BOUNDS);
+        g2d.setColor(Color.GREEN);
+        g2d.setFont(HUD_FONT);
+        int x = HUD_BOUNDS.x + 6, y = HUD_BOUNDS.y + 16;
+        g2d.drawString(String.format("frame p50 %.2f ms  p99 %.2f ms  %.0f fps  input p99 %.1f ms",
+                metrics.getFrameP50Nanos() / 1e6, metrics.getFrameP99Nanos() / 1e6, metrics.getFps(),
+                metrics.getInputLatencyP99Nanos() / 1e6), x, y);
+        g2d.drawString(String.format("paints %d / %d repaints  drawn %d  skipped %d  cached %d",
+                metrics.getPaints(), metrics.getRepaintRequests(), metrics.getShapesDrawn(),
+                metrics.getShapesSkipped(), metrics.getShapesCached()), x, y + 18);
+    }
+
+    private String vertexLabel(int index) {
+        if (index >= vertexLabels.length) {
+            String[] labels = Arrays.copyOf(vertexLabels, Math.max(16, index * 2));
+            for (int i = vertexLabels.length; i < labels.length; i++) {
+                labels[i] = String.valueOf(i + 1);
+            }
+            vertexLabels = labels;
+        }
+        return vertexLabels[index];
+    }
+
+    // Repaints a canvas-space box, mapped through the zoom and pan and padded for antialiasing and rounding
+    private void repaintCanvasRegion(Rectangle box) {
+        int left = (int) Math.floor(box.x * scale) + canvasOrigin.x - 2;
+        int top = (int) Math.floor(box.y * scale) + canvasOrigin.y - 2;
+        int right = (int) Math.ceil((box.x + box.width) * scale) + canvasOrigin.x + 2;
+        int bottom = (int) Math.ceil((box.y + box.height) * scale) + canvasOrigin.y + 2;
+        canvas.repaint(left, top, right - left, bottom - top);
+    }
+
+    // Repaints the marker and number label of a newly placed polygon vertex
+    private void repaintVertex(int index) {
+        Point p = polygonPoints.get(index);
+        FontMetrics metrics = canvas.getFontMetrics(VERTEX_LABEL_FONT);
+        int labelRight = p.x + 5 + metrics.stringWidth(vertexLabel(index));
+        int labelTop = p.y - 5 - metrics.getAscent();
+        dirtyRegion.setBounds(p.x - 4, labelTop, labelRight - (p.x - 4), p.y + 4 - labelTop);
+        repaintCanvasRegion(dirtyRegion);
+    }
+
+    private void addShape(ShapeData shape) {
+        shapes.add(shape);
+        history.push(new AddShapeEdit(shapes, shape.estimatedBytes(), this::shapeUndone, this::shapeRedone));
+        sceneDirty = true; // An append; the current frame stays valid underneath the new shape
+        if (journal != null) {
+            journal.shapeAdded(shapes, shapes.size() - 1);
+        }
+    }
+
+    private void shapeUndone() {
+        invalidateScene();
+        if (journal != null) {
+            journal.shapeRemoved();
+        }
+    }
+
+    private void shapeRedone() {
+        invalidateScene();
+        if (journal != null) {
+            journal.shapeAdded(shapes, shapes.size() - 1);
+        }
+    }
+
+    private void undo() {
+        if (history.undo()) {
+            canvas.repaint();
+        }
+    }
+
+    private void redo() {
+        if (history.redo()) {
+            canvas.repaint();
+        }
+    }
+
+    private void setCanvasBackground(Color color) {
+        canvasBackgroundColor = color;
+        invalidateScene();
+        canvas.repaint();
+        if (journal != null) {
+            journal.backgroundChanged(color);
+        }
+    }
+
+    private void setCanvasSize(int width, int height) {
+        canvasWidth = width;
+        canvasHeight = height;
+        canvas.setPreferredSize(new Dimension(canvasWidth, canvasHeight));
+        invalidateScene();
+        canvas.revalidate();
+        canvas.repaint();
+        if (journal != null) {
+            journal.resized(width, height);
+        }
+    }
+
+    private class BackgroundEdit implements EditHistory.Edit {
+        private final Color oldColor, newColor;
+
+        BackgroundEdit(Color oldColor, Color newColor) {
+            this.oldColor = oldColor;
+            this.newColor = newColor;
+        }
+
+        @Override
+        public void undo() {
+            setCanvasBackground(oldColor);
+        }
+
+        @Override
+        public void redo() {
+            setCanvasBackground(newColor);
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 64;
+        }
+    }
+
+    private class ResizeEdit implements EditHistory.Edit {
+        private final int oldWidth, oldHeight, newWidth, newHeight;
+
+        ResizeEdit(int oldWidth, int oldHeight, int newWidth, int newHeight) {
+            this.oldWidth = oldWidth;
+            this.oldHeight = oldHeight;
+            this.newWidth = newWidth;
+            this.newHeight = newHeight;
+        }
+
+        @Override
+        public void undo() {
+            setCanvasSize(oldWidth, oldHeight);
+        }
+
+        @Override
+        public void redo() {
+            setCanvasSize(newWidth, newHeight);
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 32;
+        }
+    }
+
+    private void invalidateScene() {
+        sceneDirty = true;
+        sceneVersion++;
+    }
+
+    // Asks the render thread for a new frame of the region (in zoomed canvas pixels) when the scene
+    // changed or the view moved since the last request, or to refine a fast frame once input pauses.
+    // Starting to interact alone never re-renders: a refined frame is just as good for the new drag.
+    private void requestSceneFrame(Rectangle region) {
+        boolean highQuality = !interacting;
+        if (!sceneDirty && region.equals(requestedRegion) && scale == requestedScale && deviceScale == requestedDeviceScale
+                && (requestedHighQuality || !highQuality)) {
+            return;
+        }
+        // The spatial index stays on the EDT, so the visible shapes are looked up here.
+        // With the whole canvas in view every shape is drawn and the lookup is skipped.
+        int[] ids = null;
+        if (region.x > 0 || region.y > 0 || region.width < (int) Math.ceil(canvasWidth * scale)
+                || region.height < (int) Math.ceil(canvasHeight * scale)) {
+            SceneRenderer.query(shapes, scale, region, visibleShapes);
+            ids = Arrays.copyOf(visibleShapes.array(), visibleShapes.size());
+        }
+        sceneRenderThread.submit(shapes.snapshot(), ids, canvasBackgroundColor, scale, deviceScale, region, sceneVersion,
+                highQuality);
+        requestedHighQuality = highQuality;
+        requestedRegion.setBounds(region);
+        requestedScale = scale;
+        requestedDeviceScale = deviceScale;
+        sceneDirty = false;
+    }
+
+    // Blits the latest frame where its region is now, stretched if it was rendered at another zoom.
+    // Until a frame for the current view arrives, uncovered parts show the plain canvas background.
+    private void paintSceneFrame(Graphics2D g2d, Rectangle visible) {
+        g2d.setColor(canvasBackgroundColor);
+        g2d.fillRect(visible.x + canvasOrigin.x, visible.y + canvasOrigin.y, visible.width, visible.height);
+        if (sceneFrame == null) {
+            return;
+        }
+        Rectangle region = sceneFrame.getRegion();
+        double zoom = scale / sceneFrame.getScale();
+        int left = canvasOrigin.x + (int) Math.round(region.x * zoom);
+        int top = canvasOrigin.y + (int) Math.round(region.y * zoom);
+        int right = canvasOrigin.x + (int) Math.round((region.x + region.width) * zoom);
+        int bottom = canvasOrigin.y + (int) Math.round((region.y + region.height) * zoom);
+        g2d.drawImage(sceneFrame.getImage(), left, top, right - left, bottom - top, null);
+    }
+
+    // Draws the shapes committed after the frame was rendered, so a new shape does not disappear
+    // between the mouse release and the frame that includes it. Expects the canvas transform.
+    private void paintNewShapes(Graphics2D g2d) {
+        if (sceneFrame != null && sceneFrame.getSceneVersion() == sceneVersion) {
+            for (int i = sceneFrame.getShapeCount(); i < shapes.size(); i++) {
+                shapes.draw(i, g2d, sceneScratch, scale * deviceScale);
+            }
+        }
+    }
+
+    private boolean isMouseInCanvas(MouseEvent e) {
+        return e.getX() >= 0 && e.getX() <= canvasWidth &&
+                e.getY() >= 0 && e.getY() <= canvasHeight;
+    }
+
+    // Starts over on an empty canvas; the autosaved session starts over with it
+    private void newScene() {
+        if (shapes.size() > 0 && JOptionPane.showConfirmDialog(this,
+                "Discard the current drawing? This cannot be undone.", "New",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        setScene(new Scene(new ShapeStore(), Color.WHITE, DEFAULT_CANVAS_WIDTH, DEFAULT_CANVAS_HEIGHT));
+    }
+
+    private void saveScene() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("drawing.jpaint"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            SceneBinary.write(chooser.getSelectedFile().toPath(),
+                    new Scene(shapes, canvasBackgroundColor, canvasWidth, canvasHeight));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not save drawing: " + ex.getMessage(), "Save", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void openScene() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            Path path = chooser.getSelectedFile().toPath();
+            setScene(SceneSvg.isSvgFile(path) ? SceneSvg.read(path) : SceneBinary.read(path));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not open drawing: " + ex.getMessage(), "Open", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Replaces the whole drawing; the old history no longer applies to it
+    private void setScene(Scene scene) {
+        shapes = scene.getShapes();
+        history.clear();
+        tempShape = null;
+        polygonPoints.clear();
+        canvasBackgroundColor = scene.getBackground();
+        setCanvasSize(scene.getWidth(), scene.getHeight());
+        if (journal != null) {
+            journal.sceneReplaced();
+        }
+    }
+
+    // Renders the canvas at full size in parallel tiles and streams it to a PNG file
+    private void exportPng() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("drawing.png"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            exportPng(chooser.getSelectedFile(), 1.0);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not export image: " + ex.getMessage(), "Export PNG", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void exportPng(File file, double exportScale) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+             PngWriter png = new PngWriter(out, TileRenderer.outputSize(canvasWidth, exportScale),
+                     TileRenderer.outputSize(canvasHeight, exportScale))) {
+            tileRenderer.render(shapes, canvasBackgroundColor, canvasWidth, canvasHeight, exportScale,
+                    (y, band, height) -> png.writeRows(band, height));
+        }
+    }
+
+    // Streams the drawing as SVG elements, so memory use does not grow with the number of shapes
+    private void exportSvg() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("drawing.svg"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            SceneSvg.write(chooser.getSelectedFile().toPath(),
+                    new Scene(shapes, canvasBackgroundColor, canvasWidth, canvasHeight));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not export SVG: " + ex.getMessage(), "Export SVG", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void showGeneratedCode() {
+        Scene scene = new Scene(shapes, canvasBackgroundColor, canvasWidth, canvasHeight);
+
+        // Statements are easiest to read; a data table keeps big drawings small and quick to compile
+        String[] styles = {"Statements", "Data table"};
+        int choice = JOptionPane.showOptionDialog(this, "Generate one statement per shape, or the shapes as data plus a drawing loop?",
+                "Generated Code", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, styles,
+                styles[shapes.size() > GENERATED_CODE_PREVIEW_LIMIT ? 1 : 0]);
+        if (choice < 0) {
+            return;
+        }
+        CodeGenerator.Style style = choice == 0 ? CodeGenerator.Style.STATEMENTS : CodeGenerator.Style.DATA_TABLE;
+
+        // Large scenes go straight to a file instead of through a text area
+        if (shapes.size() > GENERATED_CODE_PREVIEW_LIMIT) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("GeneratedDrawing.java"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try (Writer out = Files.newBufferedWriter(chooser.getSelectedFile().toPath())) {
+                new CodeGenerator(out, style).generate(scene);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Could not write code: " + ex.getMessage(), "Generated Code", JOptionPane.ERROR_MESSAGE);
+            }
+            return;
+        }
+
+        StringWriter code = new StringWriter();
+        try {
+            new CodeGenerator(code, style).generate(scene);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // StringWriter never throws
+        }
+
+        // Display the generated code
+        JTextArea textArea = new JTextArea(code.toString());
+        textArea.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(textArea), "Generated Code", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--render")) {
+            // Batch mode never opens a window, so it also runs without a display
+            System.setProperty("java.awt.headless", "true");
+            System.exit(BatchRenderer.run(args));
+        }
+        SwingUtilities.invokeLater(JavaPaint::new);
+    }
+}
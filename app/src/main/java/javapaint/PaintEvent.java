@@ -0,0 +1,32 @@
+package javapaint;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One canvas paint, visible in JDK Flight Recorder recordings next to GC and safepoint events
+@Name("javapaint.Paint")
+@Label("Canvas Paint")
+@Category("JavaPaint")
+@StackTrace(false)
+class PaintEvent extends Event {
+    @Label("Scene Cached")
+    boolean sceneCached;
+
+    @Label("Shapes Drawn")
+    int shapesDrawn;
+
+    @Label("Shapes Skipped")
+    int shapesSkipped;
+
+    @Label("Zoom")
+    double scale;
+
+    @Label("Clip Width")
+    int clipWidth;
+
+    @Label("Clip Height")
+    int clipHeight;
+}
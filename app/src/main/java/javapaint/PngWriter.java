@@ -0,0 +1,124 @@
+package javapaint;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Minimal streaming PNG encoder (8-bit RGB). Rows are written as they are produced,
+// so images far larger than the heap can be exported band by band.
+class PngWriter implements Closeable {
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final DeflaterOutputStream pixels;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final int[] row;
+    private final byte[] rowBytes;
+
+    PngWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.row = new int[width];
+        this.rowBytes = new byte[1 + 3 * width];
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(8); // Bit depth
+        headerData.writeByte(2); // Truecolour
+        headerData.writeByte(0); // Deflate
+        headerData.writeByte(0); // Adaptive filtering
+        headerData.writeByte(0); // No interlace
+        writeChunk("IHDR", header.toByteArray(), header.size());
+
+        pixels = new DeflaterOutputStream(new IdatOutputStream(), deflater, CHUNK_SIZE);
+    }
+
+    // Appends the first rows of the image, which must be exactly as wide as the PNG
+    public void writeRows(BufferedImage image, int rows) throws IOException {
+        for (int y = 0; y < rows; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            rowBytes[0] = 1; // Sub filter: each byte minus the same channel of the pixel to its left
+            int previous = 0;
+            for (int x = 0, i = 1; x < width; x++, i += 3) {
+                int rgb = row[x];
+                rowBytes[i] = (byte) ((rgb >> 16) - (previous >> 16));
+                rowBytes[i + 1] = (byte) ((rgb >> 8) - (previous >> 8));
+                rowBytes[i + 2] = (byte) (rgb - previous);
+                previous = rgb;
+            }
+            pixels.write(rowBytes);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pixels.close();
+        deflater.end();
+        writeChunk("IEND", new byte[0], 0);
+        out.close();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // Collects compressed bytes and emits them as IDAT chunks
+    private class IdatOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeChunk("IDAT", buffer, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
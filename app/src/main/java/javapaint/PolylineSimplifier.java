@@ -0,0 +1,83 @@
+package javapaint;
+
+// Douglas-Peucker simplification and smoothing of integer vertex lists
+class PolylineSimplifier {
+
+    private PolylineSimplifier() {
+    }
+
+    // Smooths the first count vertices in place with passes of a 1-2-1 moving average, which takes out
+    // the jitter of raw mouse samples. The end points stay where they are.
+    static void smooth(int[] xs, int[] ys, int count, int passes) {
+        for (int pass = 0; pass < passes; pass++) {
+            int previousX = xs[0], previousY = ys[0];
+            for (int i = 1; i < count - 1; i++) {
+                int x = xs[i], y = ys[i];
+                xs[i] = (previousX + 2 * x + xs[i + 1] + 2) >> 2;
+                ys[i] = (previousY + 2 * y + ys[i + 1] + 2) >> 2;
+                previousX = x;
+                previousY = y;
+            }
+        }
+    }
+
+    // Copies the vertices that keep the line within tolerance of the original into outX/outY,
+    // which need room for count entries, and returns how many were kept. The end points always stay.
+    static int simplify(int[] xs, int[] ys, int offset, int count, double tolerance, int[] outX, int[] outY) {
+        if (count <= 2) {
+            System.arraycopy(xs, offset, outX, 0, count);
+            System.arraycopy(ys, offset, outY, 0, count);
+            return count;
+        }
+        boolean[] keep = new boolean[count];
+        keep[0] = keep[count - 1] = true;
+        double toleranceSquared = tolerance * tolerance;
+
+        // Explicit stack of index ranges instead of recursion, so long strokes cannot overflow the stack
+        IntList ranges = new IntList();
+        ranges.add(0);
+        ranges.add(count - 1);
+        while (!ranges.isEmpty()) {
+            int last = ranges.get(ranges.size() - 1);
+            int first = ranges.get(ranges.size() - 2);
+            ranges.removeLast(2);
+
+            double ax = xs[offset + first], ay = ys[offset + first];
+            double dx = xs[offset + last] - ax, dy = ys[offset + last] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            int farthest = -1;
+            double farthestDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double px = xs[offset + i] - ax, py = ys[offset + i] - ay;
+                double distance;
+                if (lengthSquared == 0) {
+                    distance = px * px + py * py;
+                } else {
+                    double cross = px * dy - py * dx;
+                    distance = cross * cross / lengthSquared;
+                }
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                ranges.add(first);
+                ranges.add(farthest);
+                ranges.add(farthest);
+                ranges.add(last);
+            }
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                outX[kept] = xs[offset + i];
+                outY[kept] = ys[offset + i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,159 @@
+package javapaint;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and timings for the canvas paint loop. Paints are recorded on the EDT; repaint requests
+// may come from any thread, and snapshots can be taken from any thread, e.g. by a test harness.
+class RenderMetrics {
+    private final TimeHistogram frameTimes = new TimeHistogram();
+    private final TimeHistogram inputLatencies = new TimeHistogram();
+    private final LongAdder repaintRequests = new LongAdder();
+    private long paints = 0;
+    private long shapesDrawn = 0, shapesSkipped = 0, shapesCached = 0;
+
+    // Time of the oldest input event that no paint has shown yet; 0 when there is none
+    private long pendingInputNanos = 0;
+
+    // Paints counted over the current one-second window, and the rate of the last full window
+    private long fpsWindowStart = 0;
+    private int fpsWindowPaints = 0;
+    private double fps = 0;
+
+    public void repaintRequested() {
+        repaintRequests.increment();
+    }
+
+    public synchronized void inputReceived(long nanos) {
+        if (pendingInputNanos == 0) {
+            pendingInputNanos = nanos;
+        }
+    }
+
+    // drawn and skipped count the shapes rasterized and culled when the scene cache was rebuilt;
+    // cached counts the shapes a paint got from the cache instead
+    public synchronized void painted(long startNanos, long endNanos, int drawn, int skipped, int cached) {
+        paints++;
+        frameTimes.recordNanos(endNanos - startNanos);
+        shapesDrawn += drawn;
+        shapesSkipped += skipped;
+        shapesCached += cached;
+        if (pendingInputNanos != 0) {
+            inputLatencies.recordNanos(endNanos - pendingInputNanos);
+            pendingInputNanos = 0;
+        }
+
+        fpsWindowPaints++;
+        long elapsed = endNanos - fpsWindowStart;
+        if (elapsed >= 1_000_000_000L) {
+            fps = fpsWindowStart == 0 ? 0 : fpsWindowPaints * 1e9 / elapsed;
+            fpsWindowStart = endNanos;
+            fpsWindowPaints = 0;
+        }
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    public synchronized void reset() {
+        frameTimes.reset();
+        inputLatencies.reset();
+        repaintRequests.reset();
+        paints = 0;
+        shapesDrawn = shapesSkipped = shapesCached = 0;
+        pendingInputNanos = 0;
+        fpsWindowStart = 0;
+        fpsWindowPaints = 0;
+        fps = 0;
+    }
+
+    // Immutable copy of the metrics at one point in time; durations are in nanoseconds
+    static final class Snapshot {
+        private final long repaintRequests, paints;
+        private final long shapesDrawn, shapesSkipped, shapesCached;
+        private final long frameP50, frameP90, frameP99, frameMax, frameMean;
+        private final long inputLatencyP50, inputLatencyP99, inputLatencyMax;
+        private final double fps;
+
+        private Snapshot(RenderMetrics metrics) {
+            repaintRequests = metrics.repaintRequests.sum();
+            paints = metrics.paints;
+            shapesDrawn = metrics.shapesDrawn;
+            shapesSkipped = metrics.shapesSkipped;
+            shapesCached = metrics.shapesCached;
+            frameP50 = metrics.frameTimes.getPercentileNanos(50);
+            frameP90 = metrics.frameTimes.getPercentileNanos(90);
+            frameP99 = metrics.frameTimes.getPercentileNanos(99);
+            frameMax = metrics.frameTimes.getMaxNanos();
+            frameMean = metrics.frameTimes.getMeanNanos();
+            inputLatencyP50 = metrics.inputLatencies.getPercentileNanos(50);
+            inputLatencyP99 = metrics.inputLatencies.getPercentileNanos(99);
+            inputLatencyMax = metrics.inputLatencies.getMaxNanos();
+            fps = metrics.fps;
+        }
+
+        public long getRepaintRequests() {
+            return repaintRequests;
+        }
+
+        public long getPaints() {
+            return paints;
+        }
+
+        public long getShapesDrawn() {
+            return shapesDrawn;
+        }
+
+        public long getShapesSkipped() {
+            return shapesSkipped;
+        }
+
+        public long getShapesCached() {
+            return shapesCached;
+        }
+
+        public long getFrameP50Nanos() {
+            return frameP50;
+        }
+
+        public long getFrameP90Nanos() {
+            return frameP90;
+        }
+
+        public long getFrameP99Nanos() {
+            return frameP99;
+        }
+
+        public long getFrameMaxNanos() {
+            return frameMax;
+        }
+
+        public long getFrameMeanNanos() {
+            return frameMean;
+        }
+
+        public long getInputLatencyP50Nanos() {
+            return inputLatencyP50;
+        }
+
+        public long getInputLatencyP99Nanos() {
+            return inputLatencyP99;
+        }
+
+        public long getInputLatencyMaxNanos() {
+            return inputLatencyMax;
+        }
+
+        public double getFps() {
+            return fps;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("frame p50 %.2f ms  p99 %.2f ms  max %.2f ms  %.0f fps  input p99 %.2f ms%n"
+                            + "paints %d / repaints %d  shapes drawn %d  skipped %d  cached %d",
+                    frameP50 / 1e6, frameP99 / 1e6, frameMax / 1e6, fps, inputLatencyP99 / 1e6,
+                    paints, repaintRequests, shapesDrawn, shapesSkipped, shapesCached);
+        }
+    }
+}
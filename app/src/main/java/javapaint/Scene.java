@@ -0,0 +1,33 @@
+package javapaint;
+
+import java.awt.*;
+
+// A drawing as it is saved and loaded: the committed shapes plus the canvas they sit on
+class Scene {
+    private final ShapeStore shapes;
+    private final Color background;
+    private final int width, height;
+
+    Scene(ShapeStore shapes, Color background, int width, int height) {
+        this.shapes = shapes;
+        this.background = background;
+        this.width = width;
+        this.height = height;
+    }
+
+    public ShapeStore getShapes() {
+        return shapes;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,370 @@
+package javapaint;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Compact binary scene files. All numbers are big-endian.
+//
+//   int    magic 'JPNT'
+//   short  format version
+//   int    header length, followed by that many bytes:
+//            int width, int height, int background argb, int shape count
+//   shape records, each an int length followed by that many bytes:
+//            byte type, byte flags, short stroke width, int draw argb, [int fill argb if filled]
+//            line/rectangle/oval: int x1, y1, x2, y2
+//            polygon/pencil:      int count, then count pairs of int x, y
+//
+// Readers skip header bytes and record types they do not know, so fields can be appended later.
+class SceneBinary {
+    static final int MAGIC = 0x4A504E54;
+    static final short VERSION = 1;
+
+    private static final byte FILLED = 1;
+    private static final int HEADER_LENGTH = 16;
+    private static final int MIN_RECORD_LENGTH = 8; // Every record holds at least a type, flags, stroke and colour
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private SceneBinary() {
+    }
+
+    public static boolean isSceneFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    public static void write(Path path, Scene scene) throws IOException {
+        ShapeStore shapes = scene.getShapes();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putInt(HEADER_LENGTH);
+            buffer.putInt(scene.getWidth());
+            buffer.putInt(scene.getHeight());
+            buffer.putInt(scene.getBackground().getRGB());
+            buffer.putInt(shapes.size());
+
+            for (int i = 0; i < shapes.size(); i++) {
+                int length = recordLength(shapes, i);
+                if (buffer.remaining() < 4 + length) {
+                    drain(channel, buffer);
+                    if (buffer.capacity() < 4 + length) {
+                        buffer = ByteBuffer.allocateDirect(4 + length); // A single huge polygon
+                    }
+                }
+                putRecord(buffer, shapes, i, length);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    // Memory-maps the file and decodes it straight into a new store
+    public static Scene read(Path path) throws IOException {
+        try (Reader reader = open(path)) {
+            ShapeStore shapes = new ShapeStore();
+            shapes.ensureCapacity(reader.getShapeCount());
+            int[] xs = new int[64], ys = new int[64];
+            while (reader.next()) {
+                if (ShapeData.hasPoints(reader.getType())) {
+                    int count = reader.getPointCount();
+                    if (count > xs.length) {
+                        xs = new int[count];
+                        ys = new int[count];
+                    }
+                    reader.getPoints(xs, ys);
+                    shapes.addPoints(reader.getType(), xs, ys, count, reader.getDrawArgb(), reader.isFilled(),
+                            reader.getFillArgb(), reader.getStrokeWidth());
+                } else {
+                    shapes.addShape(reader.getType(), reader.getX1(), reader.getY1(), reader.getX2(), reader.getY2(),
+                            reader.getDrawArgb(), reader.isFilled(), reader.getFillArgb(), reader.getStrokeWidth());
+                }
+            }
+            return new Scene(shapes, new Color(reader.getBackgroundArgb(), true), reader.getWidth(), reader.getHeight());
+        }
+    }
+
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    // Cursor over the shape records of a mapped file. Only the pages that are touched get loaded,
+    // so a scene can be scanned without building it in memory.
+    static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int width, height, backgroundArgb, shapeCount;
+
+        private int nextRecord;
+        private byte type, flags;
+        private int strokeWidth, drawArgb, fillArgb;
+        private int x1, y1, x2, y2;
+        private int pointCount, pointsPosition;
+
+        private Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Scene file is larger than 2 GB: " + path);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (size < 10 || buffer.getInt() != MAGIC) {
+                    throw new IOException("Not a JavaPaint scene file: " + path);
+                }
+                short version = buffer.getShort();
+                if (version > VERSION) {
+                    throw new IOException("Scene file version " + version + " is newer than this program supports");
+                }
+                int headerLength = buffer.getInt();
+                long headerEnd = (long) buffer.position() + headerLength;
+                if (headerLength < HEADER_LENGTH || headerEnd > size) {
+                    throw new IOException("Corrupt scene file header: " + path);
+                }
+                width = buffer.getInt();
+                height = buffer.getInt();
+                backgroundArgb = buffer.getInt();
+                shapeCount = buffer.getInt();
+                // Callers size their stores from the count, so it must be one the file can actually hold
+                if (shapeCount < 0 || shapeCount > (size - headerEnd) / (4 + MIN_RECORD_LENGTH)) {
+                    throw new IOException("Corrupt scene file: " + shapeCount + " shapes cannot fit in " + size + " bytes");
+                }
+                nextRecord = (int) headerEnd;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException ? (IOException) e : new IOException("Corrupt scene file: " + path, e);
+            }
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getBackgroundArgb() {
+            return backgroundArgb;
+        }
+
+        public int getShapeCount() {
+            return shapeCount;
+        }
+
+        // Moves to the next shape this version understands; false at the end of the file
+        public boolean next() throws IOException {
+            try {
+                while (nextRecord < buffer.limit()) {
+                    buffer.position(nextRecord);
+                    int start = nextRecord;
+                    nextRecord = recordEnd(buffer, start);
+                    type = buffer.get();
+                    if (type < ShapeData.LINE || type > ShapeData.PENCIL) {
+                        continue;
+                    }
+                    flags = buffer.get();
+                    strokeWidth = strokeWidth(buffer, start);
+                    drawArgb = buffer.getInt();
+                    fillArgb = (flags & FILLED) != 0 ? buffer.getInt() : 0;
+                    if (ShapeData.hasPoints(type)) {
+                        pointCount = pointCount(buffer, nextRecord, start);
+                        pointsPosition = buffer.position();
+                    } else {
+                        pointCount = 0;
+                        x1 = buffer.getInt();
+                        y1 = buffer.getInt();
+                        x2 = buffer.getInt();
+                        y2 = buffer.getInt();
+                    }
+                    if (buffer.position() > nextRecord) {
+                        throw new IOException("Shape record at offset " + start + " is shorter than its fields");
+                    }
+                    return true;
+                }
+                return false;
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt shape record at offset " + buffer.position(), e);
+            }
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public boolean isFilled() {
+            return (flags & FILLED) != 0;
+        }
+
+        public int getStrokeWidth() {
+            return strokeWidth;
+        }
+
+        public int getDrawArgb() {
+            return drawArgb;
+        }
+
+        public int getFillArgb() {
+            return fillArgb;
+        }
+
+        public int getX1() {
+            return x1;
+        }
+
+        public int getY1() {
+            return y1;
+        }
+
+        public int getX2() {
+            return x2;
+        }
+
+        public int getY2() {
+            return y2;
+        }
+
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        // Copies the current polygon's or pencil stroke's points into arrays of at least getPointCount() entries
+        public void getPoints(int[] xs, int[] ys) {
+            int position = pointsPosition;
+            for (int p = 0; p < pointCount; p++, position += 8) {
+                xs[p] = buffer.getInt(position);
+                ys[p] = buffer.getInt(position + 4);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Bytes putShape() writes for one shape, including its length prefix
+    static int shapeSize(ShapeStore shapes, int i) {
+        return 4 + recordLength(shapes, i);
+    }
+
+    // Writes one shape record exactly as scene files hold it, e.g. for the autosave journal
+    static void putShape(ByteBuffer buffer, ShapeStore shapes, int i) {
+        putRecord(buffer, shapes, i, recordLength(shapes, i));
+    }
+
+    // Reads a record written by putShape() and appends the shape; records of unknown types are skipped
+    static void readShape(ByteBuffer buffer, ShapeStore shapes) throws IOException {
+        try {
+            int start = buffer.position();
+            int end = recordEnd(buffer, start);
+            byte type = buffer.get();
+            if (type < ShapeData.LINE || type > ShapeData.PENCIL) {
+                buffer.position(end);
+                return;
+            }
+            byte flags = buffer.get();
+            int strokeWidth = strokeWidth(buffer, start);
+            int drawArgb = buffer.getInt();
+            boolean filled = (flags & FILLED) != 0;
+            int fillArgb = filled ? buffer.getInt() : 0;
+            if (ShapeData.hasPoints(type)) {
+                int count = pointCount(buffer, end, start);
+                int[] xs = new int[count], ys = new int[count];
+                for (int p = 0; p < count; p++) {
+                    xs[p] = buffer.getInt();
+                    ys[p] = buffer.getInt();
+                }
+                shapes.addPoints(type, xs, ys, count, drawArgb, filled, fillArgb, strokeWidth);
+            } else {
+                int x1 = buffer.getInt(), y1 = buffer.getInt(), x2 = buffer.getInt(), y2 = buffer.getInt();
+                if (buffer.position() > end) {
+                    throw new IOException("Shape record at offset " + start + " is shorter than its fields");
+                }
+                shapes.addShape(type, x1, y1, x2, y2, drawArgb, filled, fillArgb, strokeWidth);
+            }
+            buffer.position(end);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt shape record at offset " + buffer.position(), e);
+        }
+    }
+
+    // Reads the length prefix of the record at start and returns where the record ends. A length that
+    // is too short or runs past the buffer would otherwise loop on one record or read the next one.
+    private static int recordEnd(ByteBuffer buffer, int start) throws IOException {
+        int length = buffer.getInt();
+        long end = (long) buffer.position() + length;
+        if (length < MIN_RECORD_LENGTH || end > buffer.limit()) {
+            throw new IOException("Corrupt shape record length " + length + " at offset " + start);
+        }
+        return (int) end;
+    }
+
+    // Reads a polygon's or pencil stroke's point count, which must fit in the rest of its record
+    private static int pointCount(ByteBuffer buffer, int end, int start) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > (end - buffer.position()) / 8) {
+            throw new IOException("Corrupt point count " + count + " in shape record at offset " + start);
+        }
+        return count;
+    }
+
+    // Reads a stroke width; a negative one would make every later render of the scene throw
+    private static int strokeWidth(ByteBuffer buffer, int start) throws IOException {
+        int width = buffer.getShort();
+        if (width < 0) {
+            throw new IOException("Corrupt stroke width " + width + " in shape record at offset " + start);
+        }
+        return width;
+    }
+
+    private static int recordLength(ShapeStore shapes, int i) {
+        int length = 1 + 1 + 2 + 4 + (shapes.isFilled(i) ? 4 : 0);
+        return length + (ShapeData.hasPoints(shapes.getType(i)) ? 4 + 8 * shapes.getPointCount(i) : 16);
+    }
+
+    private static void putRecord(ByteBuffer buffer, ShapeStore shapes, int i, int length) {
+        buffer.putInt(length);
+        buffer.put(shapes.getType(i));
+        buffer.put(shapes.isFilled(i) ? FILLED : 0);
+        buffer.putShort((short) shapes.getStrokeWidth(i));
+        buffer.putInt(shapes.getDrawArgb(i));
+        if (shapes.isFilled(i)) {
+            buffer.putInt(shapes.getFillArgb(i));
+        }
+        if (ShapeData.hasPoints(shapes.getType(i))) {
+            int count = shapes.getPointCount(i);
+            buffer.putInt(count);
+            for (int p = 0; p < count; p++) {
+                buffer.putInt(shapes.getPointX(i, p));
+                buffer.putInt(shapes.getPointY(i, p));
+            }
+        } else {
+            buffer.putInt(shapes.getX1(i));
+            buffer.putInt(shapes.getY1(i));
+            buffer.putInt(shapes.getX2(i));
+            buffer.putInt(shapes.getY2(i));
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package javapaint;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Rasterizes the committed scene on its own thread so the EDT only blits finished frames.
+// The EDT submits immutable requests; the newest one wins and cancels a render still in progress.
+// Finished frames are handed over through an AtomicReference, and images the EDT no longer shows
+// come back through a lock-free pool, so no more than three scene images are alive at a time.
+class SceneRenderThread {
+
+    // Everything a render needs, captured on the EDT
+    private static final class Request {
+        final long generation;
+        final ShapeStore shapes;
+        final int[] ids;
+        final Color background;
+        final double scale, deviceScale;
+        final Rectangle region;
+        final long sceneVersion;
+        final boolean highQuality;
+
+        Request(long generation, ShapeStore shapes, int[] ids, Color background, double scale, double deviceScale,
+                Rectangle region, long sceneVersion, boolean highQuality) {
+            this.generation = generation;
+            this.shapes = shapes;
+            this.ids = ids;
+            this.background = background;
+            this.scale = scale;
+            this.deviceScale = deviceScale;
+            this.region = region;
+            this.sceneVersion = sceneVersion;
+            this.highQuality = highQuality;
+        }
+    }
+
+    // A finished image of one region of the scene, and what it was rendered from
+    static final class Frame {
+        private final BufferedImage image;
+        private final Rectangle region;
+        private final double scale, deviceScale;
+        private final long sceneVersion;
+        private final boolean highQuality;
+        private final int shapeCount, drawnCount, skippedCount;
+
+        private Frame(BufferedImage image, Request request, int drawnCount, int skippedCount) {
+            this.image = image;
+            this.region = request.region;
+            this.scale = request.scale;
+            this.deviceScale = request.deviceScale;
+            this.sceneVersion = request.sceneVersion;
+            this.highQuality = request.highQuality;
+            this.shapeCount = request.shapes.size();
+            this.drawnCount = drawnCount;
+            this.skippedCount = skippedCount;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        // In zoomed canvas pixels; do not modify
+        public Rectangle getRegion() {
+            return region;
+        }
+
+        public double getScale() {
+            return scale;
+        }
+
+        public double getDeviceScale() {
+            return deviceScale;
+        }
+
+        public long getSceneVersion() {
+            return sceneVersion;
+        }
+
+        public boolean isHighQuality() {
+            return highQuality;
+        }
+
+        // Shapes 0 to getShapeCount() - 1 are in the image
+        public int getShapeCount() {
+            return shapeCount;
+        }
+
+        public int getDrawnCount() {
+            return drawnCount;
+        }
+
+        public int getSkippedCount() {
+            return skippedCount;
+        }
+    }
+
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final AtomicReference<Frame> completed = new AtomicReference<>();
+    private final AtomicLong latestGeneration = new AtomicLong();
+    private final ConcurrentLinkedQueue<BufferedImage> spareImages = new ConcurrentLinkedQueue<>();
+    private final SceneRenderer renderer = new SceneRenderer(); // Only used by the render thread
+    private final Runnable onFrame;
+    private final Thread thread;
+
+    // onFrame runs on the render thread after each published frame, e.g. to request a repaint
+    SceneRenderThread(Runnable onFrame) {
+        this.onFrame = onFrame;
+        thread = new Thread(this::run, "javapaint-render");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Asks for a new frame; shapes must be a snapshot and ids the visible shapes in drawing order,
+    // or null for all of them. Any older request still rendering is cancelled.
+    public void submit(ShapeStore shapes, int[] ids, Color background, double scale, double deviceScale,
+                       Rectangle region, long sceneVersion, boolean highQuality) {
+        long generation = latestGeneration.incrementAndGet();
+        pending.set(new Request(generation, shapes, ids, background, scale, deviceScale, new Rectangle(region),
+                sceneVersion, highQuality));
+        LockSupport.unpark(thread);
+    }
+
+    // The newest frame finished since the last call, or null. The caller owns it until it hands it
+    // back through recycle().
+    public Frame takeFrame() {
+        return completed.getAndSet(null);
+    }
+
+    // Returns a frame the EDT no longer shows, so its image can be drawn into again
+    public void recycle(Frame frame) {
+        spareImages.offer(frame.image);
+    }
+
+    private void run() {
+        while (true) {
+            Request request = pending.getAndSet(null);
+            if (request == null) {
+                LockSupport.park(this);
+            } else {
+                try {
+                    render(request);
+                } catch (RuntimeException e) {
+                    // One frame that cannot be drawn must not end the thread, or the canvas never updates again
+                    System.err.println("Scene render failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void render(Request request) {
+        int width = Math.max(1, (int) Math.ceil(request.region.width * request.deviceScale));
+        int height = Math.max(1, (int) Math.ceil(request.region.height * request.deviceScale));
+        BufferedImage image = takeImage(width, height);
+        Graphics2D g2d = image.createGraphics();
+        SceneRenderer.setQuality(g2d, request.highQuality);
+        boolean finished = renderer.render(g2d, request.shapes, request.ids,
+                request.ids != null ? request.ids.length : request.shapes.size(), request.background,
+                request.scale, request.deviceScale, request.region,
+                () -> latestGeneration.get() != request.generation);
+        g2d.dispose();
+        if (!finished) {
+            spareImages.offer(image);
+            return;
+        }
+
+        // A finished frame is published even if a newer request came in meanwhile, so continuous
+        // panning or zooming still shows progress instead of cancelling every frame
+        Frame unshown = completed.getAndSet(new Frame(image, request, renderer.getDrawnCount(),
+                renderer.getSkippedCount()));
+        if (unshown != null) {
+            spareImages.offer(unshown.image); // The EDT never took it, so nobody is drawing it
+        }
+        onFrame.run();
+    }
+
+    private BufferedImage takeImage(int width, int height) {
+        BufferedImage image;
+        while ((image = spareImages.poll()) != null) {
+            if (image.getWidth() == width && image.getHeight() == height) {
+                return image;
+            }
+            // Wrong size after a resize or zoom; let it be collected
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+}
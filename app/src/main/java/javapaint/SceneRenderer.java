@@ -0,0 +1,325 @@
+package javapaint;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+// Rasterizes the committed shapes that touch one region of the zoomed canvas.
+// Used for the on-screen scene frames and for every tile of offscreen renders.
+class SceneRenderer {
+    // How many shapes are drawn between checks for a cancelled render
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    // How far past the start of a batch to look for more shapes with the same colour and stroke
+    private static final int BATCH_LOOKAHEAD = 64;
+
+    private final IntList visible = new IntList();
+    private final ShapeStore.Scratch scratch = new ShapeStore.Scratch();
+
+    // Opaque lines and rectangles sharing colour and stroke are drawn as one batch, so colour and stroke
+    // are set once per batch. A later shape only joins a batch if it overlaps none of the shapes it jumps
+    // ahead of, so z-order is kept. Thin outlines of a batch become one path where the zoom allows; wide
+    // strokes and fills stay on Java2D's rectangle and line loops, which beat one big stroked or filled
+    // path many times over. Only axis-aligned outlines of non-zero size well inside the region go into the
+    // path, and only without antialiasing: a path drops the square caps of zero-length segments, steps
+    // diagonal lines slightly differently from drawLine(), loses pixels where it meets the clip, and
+    // antialiases overlapping outlines only once.
+    private boolean batching = true;
+    private boolean[] batched = new boolean[256];
+    private final Path2D.Float outlines = new Path2D.Float();
+    private final IntList members = new IntList(), memberBounds = new IntList(), passedBounds = new IntList();
+    private final Rectangle bounds = new Rectangle();
+    private final Rectangle pathArea = new Rectangle(); // In canvas pixels
+
+    // Outcome of the last render: shapes rasterized, and shapes culled or reduced to a dot
+    private int drawnCount = 0, skippedCount = 0;
+
+    // Colour or stroke changes in the last render, and the state they left behind
+    private int stateChanges = 0, lastArgb = 0, lastStroke = -1;
+
+    // Draws the region, given in zoomed canvas pixels, so that its top-left corner lands on the
+    // origin of g2d. deviceScale is the extra scale of the target, e.g. 2 on a HiDPI screen.
+    // Changes the transform of g2d.
+    public void render(Graphics2D g2d, ShapeStore shapes, Color background, double scale, double deviceScale,
+                       Rectangle region) {
+        query(shapes, scale, region, visible);
+        render(g2d, shapes, visible.array(), visible.size(), background, scale, deviceScale, region, null);
+    }
+
+    // Collects the shapes whose bounds touch the region, still in the order they were drawn
+    static void query(ShapeStore shapes, double scale, Rectangle region, IntList result) {
+        shapes.query((int) Math.floor(region.x / scale), (int) Math.floor(region.y / scale),
+                (int) Math.ceil((region.x + region.width) / scale), (int) Math.ceil((region.y + region.height) / scale),
+                result);
+    }
+
+    // Draws the first count shapes of ids, or every shape in order if ids is null. Stops early and
+    // returns false once cancelled reports true; the image is then only partly drawn.
+    public boolean render(Graphics2D g2d, ShapeStore shapes, int[] ids, int count, Color background, double scale,
+                          double deviceScale, Rectangle region, BooleanSupplier cancelled) {
+        g2d.scale(deviceScale, deviceScale);
+        // Targets are reused from frame to frame and tile to tile; a translucent background blended
+        // over the old pixels would let them show through, so it replaces them instead
+        Composite composite = g2d.getComposite();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.setColor(background);
+        g2d.fillRect(0, 0, region.width, region.height);
+        g2d.setComposite(composite);
+        g2d.translate(-region.x, -region.y);
+        g2d.scale(scale, scale);
+
+        double pixelScale = scale * deviceScale;
+        if (batched.length < count) {
+            batched = new boolean[count];
+        } else {
+            Arrays.fill(batched, 0, count, false);
+        }
+        int left = (int) Math.ceil(region.x / scale), top = (int) Math.ceil(region.y / scale);
+        pathArea.setBounds(left, top, (int) Math.floor((region.x + region.width) / scale) - 1 - left,
+                (int) Math.floor((region.y + region.height) / scale) - 1 - top);
+        boolean mergePaths = landsOnPixels(g2d.getTransform())
+                && g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING) != RenderingHints.VALUE_ANTIALIAS_ON;
+        stateChanges = 0;
+        lastStroke = -1;
+        int drawn = 0;
+        for (int i = 0; i < count; i++) {
+            if (cancelled != null && i % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return false;
+            }
+            if (batched[i]) {
+                continue;
+            }
+            int id = ids != null ? ids[i] : i;
+            if (batching && isMergeable(shapes, id, pixelScale)) {
+                drawn += drawBatch(g2d, shapes, ids, i, count, pixelScale, mergePaths);
+                continue;
+            }
+            countStateChanges(shapes, id, pixelScale);
+            if (shapes.draw(id, g2d, scratch, pixelScale)) {
+                drawn++;
+            }
+        }
+        drawnCount = drawn;
+        skippedCount = shapes.size() - drawn;
+        return true;
+    }
+
+    // Draws the shape at ids[start] together with later shapes of the same state that can safely move
+    // up to it, and returns how many were drawn
+    private int drawBatch(Graphics2D g2d, ShapeStore shapes, int[] ids, int start, int count, double scale,
+                          boolean mergePaths) {
+        int first = ids != null ? ids[start] : start;
+        int argb = shapes.getDrawArgb(first);
+        int stroke = shapes.lodStrokeWidth(first, scale);
+        boolean filled = isFilledRectangle(shapes, first);
+        int fillArgb = shapes.getFillArgb(first);
+
+        members.clear();
+        memberBounds.clear();
+        passedBounds.clear();
+        members.add(first);
+        addBounds(memberBounds, shapeBounds(shapes, first, bounds));
+        int end = Math.min(count, start + 1 + BATCH_LOOKAHEAD);
+        for (int i = start + 1; i < end; i++) {
+            if (batched[i]) {
+                continue;
+            }
+            int id = ids != null ? ids[i] : i;
+            if (ShapeData.hasPoints(shapes.getType(id))) {
+                break; // Finding a polygon's bounds means walking its points; not worth it here
+            }
+            shapeBounds(shapes, id, bounds);
+            // Filled rectangles paint their outline and then their fill, so members must not overlap
+            // each other either; overlapping outlines of one opaque colour look the same in any order
+            if (isMergeable(shapes, id, scale) && shapes.getDrawArgb(id) == argb
+                    && shapes.lodStrokeWidth(id, scale) == stroke && isFilledRectangle(shapes, id) == filled
+                    && (!filled || shapes.getFillArgb(id) == fillArgb)
+                    && !intersectsAny(passedBounds, bounds) && (!filled || !intersectsAny(memberBounds, bounds))) {
+                batched[i] = true;
+                members.add(id);
+                addBounds(memberBounds, bounds);
+            } else {
+                addBounds(passedBounds, bounds);
+            }
+        }
+
+        if (members.size() == 1) {
+            countStateChanges(shapes, first, scale);
+            shapes.draw(first, g2d, scratch, scale);
+            return 1;
+        }
+        noteState(argb, stroke);
+        g2d.setColor(scratch.color(argb));
+        g2d.setStroke(ShapeData.stroke(stroke));
+        if (mergePaths && stroke <= 1) {
+            outlines.reset();
+            for (int i = 0; i < members.size(); i++) {
+                int id = members.get(i);
+                if (isPathSafe(shapes, id) && pathArea.contains(shapeBounds(shapes, id, bounds))) {
+                    appendOutline(outlines, shapes, id);
+                } else {
+                    drawOutline(g2d, shapes, id);
+                }
+            }
+            g2d.draw(outlines);
+        } else {
+            for (int i = 0; i < members.size(); i++) {
+                drawOutline(g2d, shapes, members.get(i));
+            }
+        }
+        if (filled) {
+            noteState(fillArgb, stroke);
+            g2d.setColor(scratch.color(fillArgb));
+            for (int i = 0; i < members.size(); i++) {
+                fillRectangle(g2d, shapes, members.get(i));
+            }
+        }
+        return members.size();
+    }
+
+    // Paths rasterize like drawRect() and drawLine() only when shape corners land on whole pixels; at
+    // other zooms merging would move edges by a pixel against shapes drawn on their own
+    private static boolean landsOnPixels(AffineTransform transform) {
+        double scale = transform.getScaleX();
+        return transform.getShearX() == 0 && transform.getShearY() == 0 && transform.getScaleY() == scale
+                && scale >= 1 && scale == Math.rint(scale)
+                && transform.getTranslateX() == Math.rint(transform.getTranslateX())
+                && transform.getTranslateY() == Math.rint(transform.getTranslateY());
+    }
+
+    // Lines and rectangles that draw() would not reduce to a dot, in colours that cover what is below
+    private static boolean isMergeable(ShapeStore shapes, int id, double scale) {
+        byte type = shapes.getType(id);
+        return (type == ShapeData.LINE || type == ShapeData.RECTANGLE) && !shapes.isDot(id, scale)
+                && shapes.getDrawArgb(id) >>> 24 == 0xFF
+                && (!isFilledRectangle(shapes, id) || shapes.getFillArgb(id) >>> 24 == 0xFF);
+    }
+
+    private static boolean isFilledRectangle(ShapeStore shapes, int id) {
+        return shapes.getType(id) == ShapeData.RECTANGLE && shapes.isFilled(id);
+    }
+
+    // Horizontal or vertical lines and rectangles with width and height, which rasterize the same
+    // as part of a path as they do through drawLine() and drawRect()
+    private static boolean isPathSafe(ShapeStore shapes, int id) {
+        boolean sameX = shapes.getX1(id) == shapes.getX2(id), sameY = shapes.getY1(id) == shapes.getY2(id);
+        return shapes.getType(id) == ShapeData.LINE ? sameX != sameY : !sameX && !sameY;
+    }
+
+    private static void appendOutline(Path2D.Float path, ShapeStore shapes, int id) {
+        if (shapes.getType(id) == ShapeData.LINE) {
+            path.moveTo(shapes.getX1(id), shapes.getY1(id));
+            path.lineTo(shapes.getX2(id), shapes.getY2(id));
+        } else {
+            appendRectangle(path, shapes, id);
+        }
+    }
+
+    private static void appendRectangle(Path2D.Float path, ShapeStore shapes, int id) {
+        int minX = Math.min(shapes.getX1(id), shapes.getX2(id)), maxX = Math.max(shapes.getX1(id), shapes.getX2(id));
+        int minY = Math.min(shapes.getY1(id), shapes.getY2(id)), maxY = Math.max(shapes.getY1(id), shapes.getY2(id));
+        path.moveTo(minX, minY);
+        path.lineTo(maxX, minY);
+        path.lineTo(maxX, maxY);
+        path.lineTo(minX, maxY);
+        path.closePath();
+    }
+
+    private static void drawOutline(Graphics2D g2d, ShapeStore shapes, int id) {
+        int x1 = shapes.getX1(id), y1 = shapes.getY1(id), x2 = shapes.getX2(id), y2 = shapes.getY2(id);
+        if (shapes.getType(id) == ShapeData.LINE) {
+            g2d.drawLine(x1, y1, x2, y2);
+        } else {
+            g2d.drawRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+        }
+    }
+
+    private static void fillRectangle(Graphics2D g2d, ShapeStore shapes, int id) {
+        int x1 = shapes.getX1(id), y1 = shapes.getY1(id), x2 = shapes.getX2(id), y2 = shapes.getY2(id);
+        g2d.fillRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+    }
+
+    // Bounds of a line or rectangle including its stroke, as the spatial index stores them
+    private static Rectangle shapeBounds(ShapeStore shapes, int id, Rectangle result) {
+        int x1 = shapes.getX1(id), y1 = shapes.getY1(id), x2 = shapes.getX2(id), y2 = shapes.getY2(id);
+        int pad = ShapeData.boundsPad(shapes.getType(id), shapes.getStrokeWidth(id));
+        result.setBounds(Math.min(x1, x2) - pad, Math.min(y1, y2) - pad,
+                Math.abs(x1 - x2) + 2 * pad, Math.abs(y1 - y2) + 2 * pad);
+        return result;
+    }
+
+    private static void addBounds(IntList list, Rectangle r) {
+        list.add(r.x);
+        list.add(r.y);
+        list.add(r.x + r.width);
+        list.add(r.y + r.height);
+    }
+
+    private static boolean intersectsAny(IntList list, Rectangle r) {
+        int[] b = list.array();
+        for (int i = 0; i < list.size(); i += 4) {
+            if (r.x <= b[i + 2] && b[i] <= r.x + r.width && r.y <= b[i + 3] && b[i + 1] <= r.y + r.height) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Counts the colour and stroke changes draw() makes for one shape
+    private void countStateChanges(ShapeStore shapes, int id, double scale) {
+        if (shapes.isDot(id, scale)) {
+            noteState(shapes.getDrawArgb(id), lastStroke);
+            return;
+        }
+        int stroke = shapes.lodStrokeWidth(id, scale);
+        noteState(shapes.getDrawArgb(id), stroke);
+        byte type = shapes.getType(id);
+        if (shapes.isFilled(id) && type != ShapeData.LINE && type != ShapeData.PENCIL) {
+            noteState(shapes.getFillArgb(id), stroke);
+        }
+    }
+
+    private void noteState(int argb, int stroke) {
+        if (argb != lastArgb || stroke != lastStroke) {
+            stateChanges++;
+            lastArgb = argb;
+            lastStroke = stroke;
+        }
+    }
+
+    // Fast hints without antialiasing while the user is interacting, antialiased quality output otherwise
+    static void setQuality(Graphics2D g2d, boolean high) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                high ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING,
+                high ? RenderingHints.VALUE_RENDER_QUALITY : RenderingHints.VALUE_RENDER_SPEED);
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                high ? RenderingHints.VALUE_STROKE_PURE : RenderingHints.VALUE_STROKE_NORMALIZE);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                high ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    // How often the last render switched colour or stroke
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    // Off draws every shape on its own, in order; for comparing against batched output
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+}
@@ -0,0 +1,608 @@
+package javapaint;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// SVG files for exchanging drawings with other tools. Both directions stream: export writes each
+// shape as soon as it is encoded, and import pulls one element at a time with StAX and appends it
+// to a ShapeStore, so memory stays flat however many shapes the file holds.
+//
+// Lines, rectangles, ellipses, polygons and pencil strokes map to line, rect, ellipse, polygon and
+// polyline elements. Filled shapes use paint-order="stroke", because JavaPaint paints the fill over
+// the inner half of the outline. Square caps and miter limit 10 match BasicStroke's defaults.
+//
+// Import also reads circle elements, style attributes, fill and stroke inherited from groups, and
+// translate, scale and axis-aligned matrix transforms and viewBoxes. Rotated or skewed content
+// cannot be held as JavaPaint shapes, so such files are rejected rather than imported wrongly.
+// Paths and text are skipped, as is everything inside defs, clip paths, masks, symbols and
+// patterns, which is not drawn where it stands. SVG shapes without a stroke get an outline in
+// their fill colour, because every JavaPaint shape has one.
+class SceneSvg {
+    static final String NAMESPACE = "http://www.w3.org/2000/svg";
+
+    private static final long NONE = -1; // A paint of "none"; other paints are 0xRRGGBB
+
+    // Elements whose content is only drawn when referenced from elsewhere, or never
+    private static final Set<String> NOT_RENDERED = Set.of("defs", "clipPath", "mask", "symbol", "pattern",
+            "marker", "linearGradient", "radialGradient", "filter", "metadata", "title", "desc", "style", "script",
+            "foreignObject");
+    private static final Pattern TRANSFORM = Pattern.compile("([a-zA-Z]+)\\s*\\(([^)]*)\\)");
+
+    private SceneSvg() {
+    }
+
+    public static boolean isSvgFile(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".svg");
+    }
+
+    public static void write(Path path, Scene scene) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            write(out, scene);
+        }
+    }
+
+    public static void write(OutputStream out, Scene scene) throws IOException {
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("svg");
+            xml.writeDefaultNamespace(NAMESPACE);
+            xml.writeAttribute("width", Integer.toString(scene.getWidth()));
+            xml.writeAttribute("height", Integer.toString(scene.getHeight()));
+            xml.writeAttribute("viewBox", "0 0 " + scene.getWidth() + " " + scene.getHeight());
+            xml.writeCharacters("\n");
+            xml.writeEmptyElement("rect");
+            xml.writeAttribute("width", "100%");
+            xml.writeAttribute("height", "100%");
+            paint(xml, "fill", scene.getBackground().getRGB());
+            xml.writeCharacters("\n");
+            xml.writeStartElement("g");
+            xml.writeAttribute("fill", "none");
+            xml.writeAttribute("stroke-linecap", "square");
+            xml.writeAttribute("stroke-miterlimit", "10");
+
+            ShapeStore shapes = scene.getShapes();
+            StringBuilder points = new StringBuilder();
+            for (int i = 0; i < shapes.size(); i++) {
+                xml.writeCharacters("\n");
+                shape(xml, shapes, i, points);
+            }
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.close(); // Does not close out
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write SVG: " + e.getMessage(), e);
+        }
+    }
+
+    private static void shape(XMLStreamWriter xml, ShapeStore shapes, int i, StringBuilder points)
+            throws XMLStreamException {
+        byte type = shapes.getType(i);
+        int x1 = shapes.getX1(i), y1 = shapes.getY1(i), x2 = shapes.getX2(i), y2 = shapes.getY2(i);
+        int left = Math.min(x1, x2), top = Math.min(y1, y2), width = Math.abs(x1 - x2), height = Math.abs(y1 - y2);
+        switch (type) {
+            case ShapeData.LINE:
+                xml.writeEmptyElement("line");
+                xml.writeAttribute("x1", Integer.toString(x1));
+                xml.writeAttribute("y1", Integer.toString(y1));
+                xml.writeAttribute("x2", Integer.toString(x2));
+                xml.writeAttribute("y2", Integer.toString(y2));
+                break;
+            case ShapeData.RECTANGLE:
+                xml.writeEmptyElement("rect");
+                xml.writeAttribute("x", Integer.toString(left));
+                xml.writeAttribute("y", Integer.toString(top));
+                xml.writeAttribute("width", Integer.toString(width));
+                xml.writeAttribute("height", Integer.toString(height));
+                break;
+            case ShapeData.OVAL:
+                xml.writeEmptyElement("ellipse");
+                xml.writeAttribute("cx", number(left + width / 2.0));
+                xml.writeAttribute("cy", number(top + height / 2.0));
+                xml.writeAttribute("rx", number(width / 2.0));
+                xml.writeAttribute("ry", number(height / 2.0));
+                break;
+            default:
+                xml.writeEmptyElement(type == ShapeData.PENCIL ? "polyline" : "polygon");
+                points.setLength(0);
+                for (int p = 0; p < shapes.getPointCount(i); p++) {
+                    if (p > 0) {
+                        points.append(' ');
+                    }
+                    points.append(shapes.getPointX(i, p)).append(',').append(shapes.getPointY(i, p));
+                }
+                xml.writeAttribute("points", points.toString());
+                if (type == ShapeData.PENCIL) {
+                    xml.writeAttribute("stroke-linecap", "round");
+                    xml.writeAttribute("stroke-linejoin", "round");
+                }
+        }
+        paint(xml, "stroke", shapes.getDrawArgb(i));
+        xml.writeAttribute("stroke-width", Integer.toString(shapes.getStrokeWidth(i)));
+        if (shapes.isFilled(i) && type != ShapeData.LINE && type != ShapeData.PENCIL) {
+            paint(xml, "fill", shapes.getFillArgb(i));
+            xml.writeAttribute("paint-order", "stroke");
+        }
+    }
+
+    private static void paint(XMLStreamWriter xml, String property, int argb) throws XMLStreamException {
+        xml.writeAttribute(property, String.format("#%06x", argb & 0xFFFFFF));
+        int alpha = argb >>> 24;
+        if (alpha != 0xFF) {
+            xml.writeAttribute(property + "-opacity", number(Math.round(alpha / 255.0 * 10000) / 10000.0));
+        }
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    public static Scene read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            return read(in);
+        }
+    }
+
+    public static Scene read(InputStream in) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Never fetch DTDs or external entities named by the file
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XMLStreamReader xml = null;
+        try {
+            xml = factory.createXMLStreamReader(in);
+            return read(xml);
+        } catch (XMLStreamException | NumberFormatException e) {
+            String where = e instanceof XMLStreamException && ((XMLStreamException) e).getLocation() != null
+                    ? " at line " + ((XMLStreamException) e).getLocation().getLineNumber() : "";
+            throw new IOException("Malformed SVG" + where + ": " + e.getMessage(), e);
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                    // Nothing was held open beyond the stream the caller closes
+                }
+            }
+        }
+    }
+
+    // Fill, stroke and transform as inherited down the element tree. Only transforms without
+    // rotation or skew are accepted, so a point maps to (scaleX * x + translateX, scaleY * y + translateY).
+    private static final class Style {
+        long fill = 0x000000, stroke = NONE;
+        double fillOpacity = 1, strokeOpacity = 1, opacity = 1;
+        double strokeWidth = 1;
+        double scaleX = 1, scaleY = 1, translateX = 0, translateY = 0;
+
+        Style copy() {
+            Style style = new Style();
+            style.fill = fill;
+            style.stroke = stroke;
+            style.fillOpacity = fillOpacity;
+            style.strokeOpacity = strokeOpacity;
+            style.opacity = opacity;
+            style.strokeWidth = strokeWidth;
+            style.scaleX = scaleX;
+            style.scaleY = scaleY;
+            style.translateX = translateX;
+            style.translateY = translateY;
+            return style;
+        }
+
+        // Applies a further transform inside the current one
+        void transform(double sx, double sy, double tx, double ty) {
+            translateX += scaleX * tx;
+            translateY += scaleY * ty;
+            scaleX *= sx;
+            scaleY *= sy;
+        }
+
+        int x(double x) {
+            return (int) Math.round(scaleX * x + translateX);
+        }
+
+        int y(double y) {
+            return (int) Math.round(scaleY * y + translateY);
+        }
+    }
+
+    private static Scene read(XMLStreamReader xml) throws XMLStreamException, IOException {
+        ShapeStore shapes = new ShapeStore();
+        Color background = Color.WHITE;
+        int width = 800, height = 600;
+        boolean sawRoot = false;
+        IntList xs = new IntList(), ys = new IntList();
+        Deque<Style> styles = new ArrayDeque<>();
+        styles.push(new Style());
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                styles.pop();
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String name = xml.getLocalName();
+            if (sawRoot && (NOT_RENDERED.contains(name) || "none".equals(xml.getAttributeValue(null, "display")))) {
+                skipElement(xml);
+                continue;
+            }
+            Style style = styles.peek().copy();
+            styles.push(style);
+            applyStyle(xml, style);
+
+            if (!sawRoot) {
+                if (!name.equals("svg")) {
+                    throw new IOException("Not an SVG file");
+                }
+                sawRoot = true;
+                double[] viewBox = numbers(xml.getAttributeValue(null, "viewBox"));
+                width = (int) Math.round(length(xml.getAttributeValue(null, "width"), viewBox.length == 4 ? viewBox[2] : width));
+                height = (int) Math.round(length(xml.getAttributeValue(null, "height"), viewBox.length == 4 ? viewBox[3] : height));
+                viewport(xml, style, viewBox, width, height);
+                transform(xml, style);
+                continue;
+            }
+            transform(xml, style);
+
+            switch (name) {
+                case "svg":
+                    // A nested viewport: placed at x, y and sized like the root
+                    double[] viewBox = numbers(xml.getAttributeValue(null, "viewBox"));
+                    style.transform(1, 1, number(xml, "x"), number(xml, "y"));
+                    viewport(xml, style, viewBox,
+                            length(xml.getAttributeValue(null, "width"), viewBox.length == 4 ? viewBox[2] : 0),
+                            length(xml.getAttributeValue(null, "height"), viewBox.length == 4 ? viewBox[3] : 0));
+                    break;
+                case "line":
+                    add(shapes, ShapeData.LINE, style, style.x(number(xml, "x1")), style.y(number(xml, "y1")),
+                            style.x(number(xml, "x2")), style.y(number(xml, "y2")));
+                    break;
+                case "rect":
+                    if ("100%".equals(xml.getAttributeValue(null, "width"))
+                            && "100%".equals(xml.getAttributeValue(null, "height")) && shapes.size() == 0) {
+                        if (style.fill != NONE) {
+                            background = new Color(argb(style.fill, style.fillOpacity * style.opacity), true);
+                        }
+                        break;
+                    }
+                    double x = number(xml, "x"), y = number(xml, "y");
+                    add(shapes, ShapeData.RECTANGLE, style, style.x(x), style.y(y),
+                            style.x(x + number(xml, "width")), style.y(y + number(xml, "height")));
+                    break;
+                case "ellipse":
+                case "circle":
+                    double cx = number(xml, "cx"), cy = number(xml, "cy");
+                    double rx = name.equals("circle") ? number(xml, "r") : number(xml, "rx");
+                    double ry = name.equals("circle") ? rx : number(xml, "ry");
+                    add(shapes, ShapeData.OVAL, style, style.x(cx - rx), style.y(cy - ry),
+                            style.x(cx + rx), style.y(cy + ry));
+                    break;
+                case "polygon":
+                case "polyline":
+                    points(xml.getAttributeValue(null, "points"), style, xs, ys);
+                    if (xs.size() > 0) {
+                        addPoints(shapes, name.equals("polygon") ? ShapeData.POLYGON : ShapeData.PENCIL, style, xs, ys);
+                    }
+                    break;
+                default:
+                    // Groups only pass their style on; anything else is skipped
+            }
+        }
+        if (!sawRoot) {
+            throw new IOException("Not an SVG file");
+        }
+        return new Scene(shapes, background, width, height);
+    }
+
+    // Moves past the end of the element whose start tag was just read, ignoring everything inside
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        for (int depth = 1; depth > 0; ) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    // Maps the viewBox, if any, onto a viewport of the given size, honouring preserveAspectRatio
+    private static void viewport(XMLStreamReader xml, Style style, double[] viewBox, double width, double height) {
+        if (viewBox.length != 4 || !(viewBox[2] > 0) || !(viewBox[3] > 0) || !(width > 0) || !(height > 0)) {
+            return;
+        }
+        double sx = width / viewBox[2], sy = height / viewBox[3];
+        String aspect = xml.getAttributeValue(null, "preserveAspectRatio");
+        aspect = aspect != null ? aspect.trim() : "xMidYMid meet";
+        double tx = 0, ty = 0;
+        if (!aspect.startsWith("none")) {
+            double scale = aspect.endsWith("slice") ? Math.max(sx, sy) : Math.min(sx, sy);
+            tx = align(aspect, "xMid", "xMax", width - viewBox[2] * scale);
+            ty = align(aspect, "YMid", "YMax", height - viewBox[3] * scale);
+            sx = sy = scale;
+        }
+        style.transform(sx, sy, tx - sx * viewBox[0], ty - sy * viewBox[1]);
+    }
+
+    private static double align(String aspect, String middle, String end, double space) {
+        return aspect.contains(middle) ? space / 2 : aspect.contains(end) ? space : 0;
+    }
+
+    // Applies the element's transform attribute. Rotations and skews other than by 0 degrees have no
+    // JavaPaint equivalent, so the file is rejected instead of imported out of place.
+    private static void transform(XMLStreamReader xml, Style style) throws IOException {
+        String transform = xml.getAttributeValue(null, "transform");
+        if (transform == null) {
+            return;
+        }
+        Matcher matcher = TRANSFORM.matcher(transform);
+        while (matcher.find()) {
+            String function = matcher.group(1);
+            double[] a = numbers(matcher.group(2));
+            boolean supported = true;
+            switch (function) {
+                case "translate":
+                    supported = a.length == 1 || a.length == 2;
+                    if (supported) {
+                        style.transform(1, 1, a[0], a.length == 2 ? a[1] : 0);
+                    }
+                    break;
+                case "scale":
+                    supported = a.length == 1 || a.length == 2;
+                    if (supported) {
+                        style.transform(a[0], a.length == 2 ? a[1] : a[0], 0, 0);
+                    }
+                    break;
+                case "matrix":
+                    supported = a.length == 6 && a[1] == 0 && a[2] == 0;
+                    if (supported) {
+                        style.transform(a[0], a[3], a[4], a[5]);
+                    }
+                    break;
+                case "rotate":
+                    supported = a.length > 0 && a[0] % 360 == 0;
+                    break;
+                case "skewX":
+                case "skewY":
+                    supported = a.length == 1 && a[0] == 0;
+                    break;
+                default:
+                    supported = false;
+            }
+            if (!supported) {
+                throw new IOException("Unsupported SVG transform " + matcher.group()
+                        + " at line " + xml.getLocation().getLineNumber()
+                        + "; only translate, scale and matrices without rotation or skew can be imported");
+            }
+        }
+    }
+
+    private static void add(ShapeStore shapes, byte type, Style style, int x1, int y1, int x2, int y2) {
+        boolean filled = type != ShapeData.LINE && style.fill != NONE;
+        if (style.stroke == NONE && !filled) {
+            return; // Invisible
+        }
+        shapes.addShape(type, x1, y1, x2, y2, drawArgb(style), filled, fillArgb(style, filled), strokeWidth(style));
+    }
+
+    private static void addPoints(ShapeStore shapes, byte type, Style style, IntList xs, IntList ys) {
+        // Pencil strokes are never filled, so an unstroked polyline takes its fill colour as outline
+        boolean filled = type == ShapeData.POLYGON && style.fill != NONE;
+        if (style.stroke == NONE && style.fill == NONE) {
+            return;
+        }
+        shapes.addPoints(type, xs.array(), ys.array(), xs.size(), drawArgb(style), filled, fillArgb(style, filled),
+                strokeWidth(style));
+    }
+
+    private static int drawArgb(Style style) {
+        if (style.stroke == NONE) {
+            return argb(style.fill, style.fillOpacity * style.opacity);
+        }
+        return argb(style.stroke, style.strokeOpacity * style.opacity);
+    }
+
+    private static int fillArgb(Style style, boolean filled) {
+        return filled ? argb(style.fill, style.fillOpacity * style.opacity) : 0;
+    }
+
+    // Stroke widths scale with the transform; the geometric mean keeps the area of a non-uniform scale.
+    // Huge results are capped at the widest stroke a scene file can store.
+    private static int strokeWidth(Style style) {
+        if (style.stroke == NONE) {
+            return 1;
+        }
+        double width = style.strokeWidth * Math.sqrt(Math.abs(style.scaleX * style.scaleY));
+        return (int) Math.round(Math.max(0, Math.min(ShapeData.MAX_STROKE_WIDTH, width)));
+    }
+
+    private static int argb(long rgb, double opacity) {
+        int alpha = (int) Math.round(Math.max(0, Math.min(1, opacity)) * 255);
+        return alpha << 24 | (int) rgb;
+    }
+
+    // Presentation attributes first, then the style attribute, which overrides them
+    private static void applyStyle(XMLStreamReader xml, Style style) {
+        for (int a = 0; a < xml.getAttributeCount(); a++) {
+            property(style, xml.getAttributeLocalName(a), xml.getAttributeValue(a));
+        }
+        String declarations = xml.getAttributeValue(null, "style");
+        if (declarations != null) {
+            for (String declaration : declarations.split(";")) {
+                int colon = declaration.indexOf(':');
+                if (colon > 0) {
+                    property(style, declaration.substring(0, colon).trim(), declaration.substring(colon + 1).trim());
+                }
+            }
+        }
+    }
+
+    private static void property(Style style, String name, String value) {
+        switch (name) {
+            case "fill":
+                style.fill = paint(value, style.fill);
+                break;
+            case "stroke":
+                style.stroke = paint(value, style.stroke);
+                break;
+            case "fill-opacity":
+                style.fillOpacity = opacity(value, style.fillOpacity);
+                break;
+            case "stroke-opacity":
+                style.strokeOpacity = opacity(value, style.strokeOpacity);
+                break;
+            case "opacity":
+                style.opacity *= opacity(value, 1);
+                break;
+            case "stroke-width":
+                double width = length(value, style.strokeWidth);
+                if (width >= 0) { // Negative widths are invalid in SVG, so the inherited one stays
+                    style.strokeWidth = width;
+                }
+                break;
+            default:
+        }
+    }
+
+    // #rgb, #rrggbb, rgb(r, g, b), none and a few common names; anything else keeps the inherited paint
+    private static long paint(String value, long inherited) {
+        value = value.trim().toLowerCase();
+        try {
+            if (value.equals("none")) {
+                return NONE;
+            } else if (value.startsWith("#") && value.length() == 7) {
+                return Long.parseLong(value.substring(1), 16);
+            } else if (value.startsWith("#") && value.length() == 4) {
+                long rgb = 0;
+                for (int c = 1; c < 4; c++) {
+                    rgb = rgb << 8 | Character.digit(value.charAt(c), 16) * 0x11;
+                }
+                return rgb;
+            } else if (value.startsWith("rgb(") && value.endsWith(")")) {
+                double[] channels = numbers(value.substring(4, value.length() - 1));
+                return (long) channels[0] << 16 | (long) channels[1] << 8 | (long) channels[2];
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return inherited;
+        }
+        switch (value) {
+            case "black":
+                return 0x000000;
+            case "white":
+                return 0xFFFFFF;
+            case "red":
+                return 0xFF0000;
+            case "green":
+                return 0x008000;
+            case "blue":
+                return 0x0000FF;
+            case "yellow":
+                return 0xFFFF00;
+            case "gray":
+            case "grey":
+                return 0x808080;
+            default:
+                return inherited;
+        }
+    }
+
+    private static double opacity(String value, double inherited) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return inherited;
+        }
+    }
+
+    // A plain or px length; percentages and other units fall back to the given value
+    private static double length(String value, double fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        value = value.trim();
+        if (value.endsWith("px")) {
+            value = value.substring(0, value.length() - 2);
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static double number(XMLStreamReader xml, String attribute) {
+        return length(xml.getAttributeValue(null, attribute), 0);
+    }
+
+    // Numbers separated by whitespace and/or commas, as in viewBox and points
+    private static double[] numbers(String value) {
+        if (value == null || value.isBlank()) {
+            return new double[0];
+        }
+        String[] fields = value.trim().split("[\\s,]+");
+        double[] numbers = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            numbers[i] = Double.parseDouble(fields[i]);
+        }
+        return numbers;
+    }
+
+    // Parses a points list without splitting it into strings first, since a pencil stroke can have
+    // hundreds of thousands of points
+    private static void points(String value, Style style, IntList xs, IntList ys) {
+        xs.clear();
+        ys.clear();
+        if (value == null) {
+            return;
+        }
+        int length = value.length(), i = 0;
+        boolean x = true;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c == ',' || Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && value.charAt(i) != ',' && !Character.isWhitespace(value.charAt(i))) {
+                i++;
+            }
+            double coordinate = Double.parseDouble(value.substring(start, i));
+            if (x) {
+                xs.add(style.x(coordinate));
+            } else {
+                ys.add(style.y(coordinate));
+            }
+            x = !x;
+        }
+        if (xs.size() > ys.size()) {
+            xs.removeLast(1); // An odd number of coordinates; SVG ignores the last one
+        }
+    }
+}
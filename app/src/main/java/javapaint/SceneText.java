@@ -0,0 +1,98 @@
+package javapaint;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+
+// Plain-text scene files, one shape per line:
+//
+//   javapaint-scene 1
+//   canvas <width> <height> <background argb hex>
+//   line|rect|oval <x1> <y1> <x2> <y2> <stroke> <draw argb hex> <fill argb hex or ->
+//   polygon|pencil <stroke> <draw argb hex> <fill argb hex or -> <count> <x> <y> ...
+//
+// Blank lines and lines starting with # are ignored.
+class SceneText {
+    static final String HEADER = "javapaint-scene 1";
+
+    private SceneText() {
+    }
+
+    public static Scene read(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null || !header.trim().equals(HEADER)) {
+            throw new IOException("Not a JavaPaint scene file");
+        }
+        ShapeStore shapes = new ShapeStore();
+        Color background = Color.WHITE;
+        int width = 800, height = 600;
+        int[] xs = new int[16], ys = new int[16];
+
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            try {
+                switch (fields[0]) {
+                    case "canvas":
+                        width = Integer.parseInt(fields[1]);
+                        height = Integer.parseInt(fields[2]);
+                        background = new Color(parseArgb(fields[3]), true);
+                        break;
+                    case "line":
+                    case "rect":
+                    case "oval":
+                        byte type = fields[0].equals("line") ? ShapeData.LINE
+                                : fields[0].equals("rect") ? ShapeData.RECTANGLE : ShapeData.OVAL;
+                        shapes.addShape(type, Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                                Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                                parseArgb(fields[6]), !fields[7].equals("-"), fillArgb(fields[7]),
+                                strokeWidth(fields[5], lineNumber));
+                        break;
+                    case "polygon":
+                    case "pencil":
+                        int count = Integer.parseInt(fields[4]);
+                        if (count > xs.length) {
+                            xs = new int[count];
+                            ys = new int[count];
+                        }
+                        for (int i = 0; i < count; i++) {
+                            xs[i] = Integer.parseInt(fields[5 + 2 * i]);
+                            ys[i] = Integer.parseInt(fields[6 + 2 * i]);
+                        }
+                        shapes.addPoints(fields[0].equals("polygon") ? ShapeData.POLYGON : ShapeData.PENCIL,
+                                xs, ys, count, parseArgb(fields[2]), !fields[3].equals("-"),
+                                fillArgb(fields[3]), strokeWidth(fields[1], lineNumber));
+                        break;
+                    default:
+                        throw new IOException("Unknown entry '" + fields[0] + "' on line " + lineNumber);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Malformed entry on line " + lineNumber, e);
+            }
+        }
+        return new Scene(shapes, background, width, height);
+    }
+
+    // A width that cannot be drawn, or stored in a binary scene file, is rejected like any other bad field
+    private static int strokeWidth(String field, int lineNumber) throws IOException {
+        int width = Integer.parseInt(field);
+        if (width < 0 || width > ShapeData.MAX_STROKE_WIDTH) {
+            throw new IOException("Stroke width " + width + " out of range on line " + lineNumber);
+        }
+        return width;
+    }
+
+    private static int parseArgb(String hex) {
+        return (int) Long.parseLong(hex, 16);
+    }
+
+    private static int fillArgb(String field) {
+        return field.equals("-") ? 0 : parseArgb(field);
+    }
+}
@@ -0,0 +1,428 @@
+package javapaint;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+// Autosave: every committed change is appended to a journal on disk, so a crash loses at most the
+// last few milliseconds of work. The session is snapshot-<n>.jpaint, a SceneBinary file (none for
+// n = 0: the starting scene), plus the changes since then in journal-<n>.log. All numbers are big-endian.
+//
+//   int    magic 'JPJL'
+//   short  format version
+//   records, each an int payload length, an int CRC-32 of the payload, then the payload:
+//            byte op, then for ADD a SceneBinary shape record, for BACKGROUND int argb,
+//            for RESIZE int width, int height, and nothing for REMOVE_LAST
+//
+// The EDT only encodes changes and queues them. A writer thread appends them in batches and fsyncs
+// once per batch. Once the journal grows past COMPACT_BYTES it is folded into a new snapshot.
+// Recovery replays records up to the first torn or corrupt one and drops the rest.
+class SessionJournal {
+    static final int MAGIC = 0x4A504A4C;
+    static final short VERSION = 1;
+
+    private static final byte ADD = 1, REMOVE_LAST = 2, BACKGROUND = 3, RESIZE = 4;
+    private static final int HEADER_SIZE = 6;
+
+    // Changes arriving this soon after the first one share its write and fsync
+    private static final long BATCH_DELAY_MILLIS = 20;
+    private static final long COMPACT_BYTES = 16L * 1024 * 1024;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    // A queued change, or a snapshot of the whole scene to compact into
+    private static final class Entry {
+        final byte[] payload;
+        final Scene snapshot;
+
+        Entry(byte[] payload, Scene snapshot) {
+            this.payload = payload;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final Entry CLOSE = new Entry(null, null);
+
+    // The scene as the replayed records leave it
+    private static final class Session {
+        final ShapeStore shapes;
+        int backgroundArgb, width, height;
+        int changes = 0;
+
+        Session(Scene scene, ShapeStore shapes) {
+            this.shapes = shapes;
+            backgroundArgb = scene.getBackground().getRGB();
+            width = scene.getWidth();
+            height = scene.getHeight();
+        }
+    }
+
+    private final Path directory;
+    private final Supplier<Scene> snapshots;
+    private final Consumer<String> onFailure;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Scene recoveredScene;
+    private final Thread thread;
+
+    // Only touched by the EDT
+    private long bytesSinceSnapshot;
+
+    // Only touched by the writer thread
+    private long generation;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final CRC32 crc = new CRC32();
+
+    private volatile boolean failed = false;
+
+    private SessionJournal(Path directory, Supplier<Scene> snapshots, Consumer<String> onFailure, long generation,
+                           FileChannel channel, long journalBytes, Scene recoveredScene) {
+        this.directory = directory;
+        this.snapshots = snapshots;
+        this.onFailure = onFailure;
+        this.generation = generation;
+        this.channel = channel;
+        this.bytesSinceSnapshot = journalBytes;
+        this.recoveredScene = recoveredScene;
+        thread = new Thread(this::run, "javapaint-autosave");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Recovers the session kept in directory, on top of a copy of initial if it has no snapshot yet, and
+    // starts journaling. snapshots is called on the EDT and must return a Scene whose shapes are a snapshot.
+    // If autosave stops, onFailure gets the reason once, on the writer thread.
+    public static SessionJournal open(Path directory, Scene initial, Supplier<Scene> snapshots,
+                                      Consumer<String> onFailure) throws IOException {
+        Files.createDirectories(directory);
+        long generation = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.jpaint")) {
+            for (Path file : files) {
+                generation = Math.max(generation, generationOf(file));
+            }
+        }
+
+        Session session;
+        if (generation > 0) {
+            Scene snapshot = SceneBinary.read(snapshotPath(directory, generation));
+            session = new Session(snapshot, snapshot.getShapes());
+        } else {
+            // Replays into a copy, so the caller's drawing is left alone until it chooses to restore
+            ShapeStore shapes = new ShapeStore();
+            for (int i = 0; i < initial.getShapes().size(); i++) {
+                shapes.add(initial.getShapes().get(i));
+            }
+            session = new Session(initial, shapes);
+        }
+        Path journal = journalPath(directory, generation);
+        long validBytes = Files.exists(journal) ? replay(journal, session) : 0;
+        deleteStaleFiles(directory, generation);
+
+        FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(validBytes); // Drops a torn record left by a crash
+            channel.position(validBytes);
+            if (validBytes == 0) {
+                writeHeader(channel);
+                channel.force(false);
+            }
+            syncDirectory(directory); // Makes a new journal's name and the stale deletes durable
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        Scene recovered = generation > 0 || session.changes > 0
+                ? new Scene(session.shapes, new Color(session.backgroundArgb, true), session.width, session.height)
+                : null;
+        return new SessionJournal(directory, snapshots, onFailure, generation, channel, Math.max(0, validBytes - HEADER_SIZE),
+                recovered);
+    }
+
+    // The scene from the previous run, or null if there was nothing to recover
+    public Scene getRecoveredScene() {
+        return recoveredScene;
+    }
+
+    public void shapeAdded(ShapeStore shapes, int i) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + SceneBinary.shapeSize(shapes, i));
+        payload.put(ADD);
+        SceneBinary.putShape(payload, shapes, i);
+        append(payload.array());
+    }
+
+    public void shapeRemoved() {
+        append(new byte[]{REMOVE_LAST});
+    }
+
+    public void backgroundChanged(Color background) {
+        append(ByteBuffer.allocate(5).put(BACKGROUND).putInt(background.getRGB()).array());
+    }
+
+    public void resized(int width, int height) {
+        append(ByteBuffer.allocate(9).put(RESIZE).putInt(width).putInt(height).array());
+    }
+
+    // The whole drawing was replaced, e.g. by opening a file; starts a new snapshot from it
+    public void sceneReplaced() {
+        compact();
+    }
+
+    // Writes out everything queued so far and stops the writer thread
+    public void close() {
+        if (!thread.isAlive()) {
+            return;
+        }
+        queue.add(CLOSE);
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(byte[] payload) {
+        if (failed) {
+            return;
+        }
+        queue.add(new Entry(payload, null));
+        bytesSinceSnapshot += 8 + payload.length;
+        if (bytesSinceSnapshot > COMPACT_BYTES) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        if (failed) {
+            return;
+        }
+        queue.add(new Entry(null, snapshots.get()));
+        bytesSinceSnapshot = 0;
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                Thread.sleep(BATCH_DELAY_MILLIS);
+                queue.drainTo(batch);
+                for (Entry entry : batch) {
+                    if (entry == CLOSE) {
+                        flush();
+                        channel.close();
+                        return;
+                    } else if (entry.snapshot != null) {
+                        flush();
+                        writeSnapshot(entry.snapshot);
+                    } else {
+                        put(entry.payload);
+                    }
+                }
+                flush();
+                batch.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Any failure ends the thread, so later changes must stop queueing instead of piling up unwritten
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fail(Exception e) {
+        failed = true;
+        queue.clear();
+        String reason = e.getMessage() != null ? e.getMessage() : e.toString();
+        System.err.println("Autosave stopped: " + reason);
+        try {
+            channel.close();
+        } catch (IOException | RuntimeException ignored) {
+            // Already failing; the first error is the one worth reporting
+        }
+        onFailure.accept(reason);
+    }
+
+    private void put(byte[] payload) throws IOException {
+        int size = 8 + payload.length;
+        if (buffer.remaining() < size) {
+            drain();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size); // A single huge pencil stroke
+            }
+        }
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void flush() throws IOException {
+        if (buffer.position() > 0) {
+            drain();
+            channel.force(false);
+        }
+    }
+
+    // The new snapshot becomes visible with an atomic rename, and only then is the old generation
+    // deleted, so a crash at any point still leaves one complete snapshot and journal pair. The
+    // directory is synced before the deletes so the rename and new journal cannot be lost after them.
+    private void writeSnapshot(Scene scene) throws IOException {
+        long next = generation + 1;
+        Path snapshot = snapshotPath(directory, next);
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        SceneBinary.write(temporary, scene);
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        FileChannel journal = FileChannel.open(journalPath(directory, next), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.close();
+        channel = journal;
+        writeHeader(channel);
+        channel.force(false);
+        syncDirectory(directory);
+        Files.deleteIfExists(journalPath(directory, generation));
+        Files.deleteIfExists(snapshotPath(directory, generation));
+        syncDirectory(directory);
+        generation = next;
+    }
+
+    // Applies the journal's records to the session and returns how many bytes of it are intact
+    private static long replay(Path journal, Session session) throws IOException {
+        // Compaction keeps the journal small enough to read in one go
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journal));
+        if (buffer.remaining() < HEADER_SIZE) {
+            return 0;
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a JavaPaint journal: " + journal);
+        }
+        short version = buffer.getShort();
+        if (version > VERSION) {
+            throw new IOException("Journal version " + version + " is newer than this program supports");
+        }
+
+        CRC32 crc = new CRC32();
+        long validBytes = buffer.position();
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 1 || length > buffer.remaining()) {
+                break; // Torn by a crash mid-write
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(payload, session);
+            buffer.position(buffer.position() + length);
+            validBytes = buffer.position();
+        }
+        return validBytes;
+    }
+
+    private static void apply(ByteBuffer payload, Session session) throws IOException {
+        switch (payload.get()) {
+            case ADD:
+                SceneBinary.readShape(payload, session.shapes);
+                break;
+            case REMOVE_LAST:
+                if (session.shapes.size() > 0) {
+                    session.shapes.removeLast();
+                }
+                break;
+            case BACKGROUND:
+                session.backgroundArgb = payload.getInt();
+                break;
+            case RESIZE:
+                session.width = payload.getInt();
+                session.height = payload.getInt();
+                break;
+            default:
+                return; // Written by a newer version; skipped like unknown scene records
+        }
+        session.changes++;
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    // Removes older generations and temporary files a crash left behind
+    private static void deleteStaleFiles(Path directory, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "{snapshot,journal}-*")) {
+            for (Path file : files) {
+                if (file.toString().endsWith(".tmp") || generationOf(file) != generation) {
+                    try {
+                        Files.delete(file);
+                    } catch (NoSuchFileException ignored) {
+                        // Gone already
+                    }
+                }
+            }
+        }
+    }
+
+    // Renames, creates and deletes only survive a crash once the directory itself is synced. Some
+    // platforms, e.g. Windows, cannot open a directory for this and keep such changes durable anyway.
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static Path snapshotPath(Path directory, long generation) {
+        return directory.resolve("snapshot-" + generation + ".jpaint");
+    }
+
+    private static Path journalPath(Path directory, long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    // The n of snapshot-<n>.jpaint or journal-<n>.log, or -1 for any other name
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int start = name.indexOf('-') + 1, end = name.indexOf('.');
+        try {
+            return end > start ? Long.parseLong(name.substring(start, end)) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package javapaint;
+
+import java.awt.*;
+import java.util.ArrayList;
+
+class ShapeData {
+    static final byte LINE = 0, RECTANGLE = 1, OVAL = 2, POLYGON = 3, PENCIL = 4;
+
+    // Scene files store the stroke width in a short
+    static final int MAX_STROKE_WIDTH = Short.MAX_VALUE;
+
+    // Built up front so the shared instances are safely visible to offscreen render threads
+    private static final BasicStroke[] STROKES = new BasicStroke[32];
+    private static final BasicStroke[] ROUND_STROKES = new BasicStroke[32];
+
+    static {
+        for (int width = 0; width < STROKES.length; width++) {
+            STROKES[width] = new BasicStroke(width);
+            ROUND_STROKES[width] = new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        }
+    }
+
+    private Point start, end;
+    // Polygon vertices or pencil samples, converted to arrays once when the shape is created
+    private int[] polygonX, polygonY;
+    private int polygonCount;
+    private Color drawColor, fillColor;
+    private int strokeWidth;
+    private byte type;
+
+    public ShapeData(Point start, Point end, String type, Color drawColor, Color fillColor, int strokeWidth) {
+        this(start, end, typeCode(type), drawColor, fillColor, strokeWidth);
+    }
+
+    ShapeData(Point start, Point end, byte type, Color drawColor, Color fillColor, int strokeWidth) {
+        this.start = start;
+        this.end = end;
+        this.type = type;
+        this.drawColor = drawColor != null ? drawColor : Color.BLACK; // Set default if null
+        this.fillColor = fillColor; // You might want to add a check here too
+        this.strokeWidth = strokeWidth;
+    }
+
+
+    public ShapeData(ArrayList<Point> polygonPoints, Color drawColor, Color fillColor, int strokeWidth) {
+        this.polygonCount = polygonPoints.size();
+        this.polygonX = new int[polygonCount];
+        this.polygonY = new int[polygonCount];
+        for (int i = 0; i < polygonCount; i++) {
+            polygonX[i] = polygonPoints.get(i).x;
+            polygonY[i] = polygonPoints.get(i).y;
+        }
+        this.drawColor = drawColor;
+        this.fillColor = fillColor;
+        this.strokeWidth = strokeWidth;
+        this.type = POLYGON;
+    }
+
+    ShapeData(int[] polygonX, int[] polygonY, int polygonCount, Color drawColor, Color fillColor, int strokeWidth) {
+        this(POLYGON, polygonX, polygonY, polygonCount, drawColor, fillColor, strokeWidth);
+    }
+
+    // A polygon or pencil stroke; takes ownership of the arrays
+    ShapeData(byte type, int[] polygonX, int[] polygonY, int polygonCount, Color drawColor, Color fillColor, int strokeWidth) {
+        this.polygonX = polygonX;
+        this.polygonY = polygonY;
+        this.polygonCount = polygonCount;
+        this.drawColor = drawColor;
+        this.fillColor = fillColor;
+        this.strokeWidth = strokeWidth;
+        this.type = type;
+    }
+
+    // Reshapes a two-point shape in place, used by the drag preview
+    public void update(Point start, int endX, int endY, String type, Color drawColor, Color fillColor, int strokeWidth) {
+        this.start.setLocation(start);
+        this.end.setLocation(endX, endY);
+        this.type = typeCode(type);
+        this.drawColor = drawColor != null ? drawColor : Color.BLACK;
+        this.fillColor = fillColor;
+        this.strokeWidth = strokeWidth;
+    }
+
+    static byte typeCode(String type) {
+        switch (type) {
+            case "Line":
+                return LINE;
+            case "Rectangle":
+                return RECTANGLE;
+            case "Oval":
+                return OVAL;
+            case "Polygon":
+                return POLYGON;
+            case "Pencil":
+                return PENCIL;
+            default:
+                throw new IllegalArgumentException("Unknown shape type: " + type);
+        }
+    }
+
+    // Polygons and pencil strokes keep a list of points instead of two corners
+    static boolean hasPoints(byte type) {
+        return type == POLYGON || type == PENCIL;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public Point getStart() {
+        return start;
+    }
+
+    public Point getEnd() {
+        return end;
+    }
+
+    public int[] getPolygonX() {
+        return polygonX;
+    }
+
+    public int[] getPolygonY() {
+        return polygonY;
+    }
+
+    public int getPolygonCount() {
+        return polygonCount;
+    }
+
+    public Color getDrawColor() {
+        return drawColor;
+    }
+
+    public Color getFillColor() {
+        return fillColor;
+    }
+
+    public int getStrokeWidth() {
+        return strokeWidth;
+    }
+
+    // Bounding box in canvas coordinates, padded so the stroke is included
+    public Rectangle getBounds() {
+        return getBounds(new Rectangle());
+    }
+
+    public Rectangle getBounds(Rectangle bounds) {
+        int minX, minY, maxX, maxY;
+        if (hasPoints(type)) {
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < polygonCount; i++) {
+                minX = Math.min(minX, polygonX[i]);
+                minY = Math.min(minY, polygonY[i]);
+                maxX = Math.max(maxX, polygonX[i]);
+                maxY = Math.max(maxY, polygonY[i]);
+            }
+        } else {
+            minX = Math.min(start.x, end.x);
+            minY = Math.min(start.y, end.y);
+            maxX = Math.max(start.x, end.x);
+            maxY = Math.max(start.y, end.y);
+        }
+        int pad = boundsPad(type, strokeWidth);
+        bounds.setBounds(minX - pad, minY - pad, maxX - minX + 2 * pad, maxY - minY + 2 * pad);
+        return bounds;
+    }
+
+    // Square caps, round caps and right-angle joins stay within one stroke width; polygon miters can reach five
+    static int boundsPad(byte type, int strokeWidth) {
+        return (type == POLYGON ? 5 * strokeWidth : strokeWidth) + 1;
+    }
+
+    // Rough heap footprint, used to keep the undo history within its memory budget
+    public long estimatedBytes() {
+        long bytes = 64 + 2 * 24;
+        if (hasPoints(type)) {
+            bytes += 2 * (16 + 4L * polygonCount);
+        }
+        return bytes;
+    }
+
+    public void drawShape(Graphics2D g2d) {
+        if (hasPoints(type)) {
+            if (polygonCount > 0) {
+                draw(g2d, type, 0, 0, 0, 0, polygonX, polygonY, polygonCount, drawColor, fillColor, strokeWidth);
+            }
+        } else {
+            draw(g2d, type, start.x, start.y, end.x, end.y, null, null, 0, drawColor, fillColor, strokeWidth);
+        }
+    }
+
+    // Shared by ShapeData and ShapeStore so both render identically
+    static void draw(Graphics2D g2d, byte type, int x1, int y1, int x2, int y2,
+                     int[] xPoints, int[] yPoints, int pointCount,
+                     Color drawColor, Color fillColor, int strokeWidth) {
+        draw(g2d, type, x1, y1, x2, y2, xPoints, yPoints, pointCount, drawColor, fillColor, stroke(type, strokeWidth));
+    }
+
+    static void draw(Graphics2D g2d, byte type, int x1, int y1, int x2, int y2,
+                     int[] xPoints, int[] yPoints, int pointCount,
+                     Color drawColor, Color fillColor, BasicStroke stroke) {
+        // Shapes in a run usually share colour and stroke, and every real change makes Java2D revalidate
+        if (g2d.getColor() != drawColor) {
+            g2d.setColor(drawColor);
+        }
+        if (g2d.getStroke() != stroke) {
+            g2d.setStroke(stroke);
+        }
+
+        switch (type) {
+            case LINE:
+                g2d.drawLine(x1, y1, x2, y2);
+                break;
+            case RECTANGLE:
+                g2d.drawRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+                if (fillColor != null) {
+                    g2d.setColor(fillColor);
+                    g2d.fillRect(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+                }
+                break;
+            case OVAL:
+                g2d.drawOval(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+                if (fillColor != null) {
+                    g2d.setColor(fillColor);
+                    g2d.fillOval(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+                }
+                break;
+            case POLYGON:
+                g2d.drawPolygon(xPoints, yPoints, pointCount);
+                if (fillColor != null) {
+                    g2d.setColor(fillColor);
+                    g2d.fillPolygon(xPoints, yPoints, pointCount);
+                }
+                break;
+            case PENCIL:
+                g2d.drawPolyline(xPoints, yPoints, pointCount);
+                break;
+        }
+    }
+
+    // Strokes are immutable, so one instance per width is shared by every shape
+    static BasicStroke stroke(int width) {
+        if (width < 0 || width >= STROKES.length) {
+            return new BasicStroke(width);
+        }
+        return STROKES[width];
+    }
+
+    // Pencil strokes use round caps and joins so sharp turns and single dots look like ink
+    static BasicStroke stroke(byte type, int width) {
+        if (type != PENCIL) {
+            return stroke(width);
+        }
+        if (width < 0 || width >= ROUND_STROKES.length) {
+            return new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        }
+        return ROUND_STROKES[width];
+    }
+}
@@ -0,0 +1,391 @@
+package javapaint;
+
+import java.awt.*;
+import java.util.Arrays;
+
+// Committed shapes kept as parallel primitive arrays instead of one ShapeData object per shape.
+// Colours are packed ARGB ints and all polygon and pencil points share one pair of coordinate buffers.
+class ShapeStore {
+    private static final byte FILLED = 1;
+
+    // Level of detail when zoomed out: shapes smaller than this many pixels become a single dot,
+    // and polygons and pencil strokes with more points than this are simplified to within LOD_TOLERANCE of a pixel
+    private static final double LOD_MIN_PIXELS = 1.0;
+    private static final int LOD_MIN_SIMPLIFY_POINTS = 8;
+    private static final double LOD_TOLERANCE = 0.5;
+    private static final double LOG_2 = Math.log(2);
+
+    private byte[] types = new byte[64];
+    private byte[] flags = new byte[64];
+    private int[] x1s = new int[64], y1s = new int[64], x2s = new int[64], y2s = new int[64];
+    private int[] strokeWidths = new int[64];
+    private int[] drawColors = new int[64], fillColors = new int[64];
+    private int size = 0;
+
+    // Polygons store the offset and count of their vertices in pointXs/pointYs
+    private int[] pointXs = new int[256], pointYs = new int[256];
+    private int pointCount = 0;
+
+    // Simplified polygon vertices for the zoom bucket they were last drawn at
+    private Simplified[] lodCache = new Simplified[64];
+
+    // Immutable, so render threads can share entries without locking
+    private static final class Simplified {
+        final int bucket;
+        final int[] xs, ys;
+        final int count;
+
+        Simplified(int bucket, int[] xs, int[] ys, int count) {
+            this.bucket = bucket;
+            this.xs = xs;
+            this.ys = ys;
+            this.count = count;
+        }
+    }
+
+    // Null in snapshots, which are only ever drawn from
+    private final SpatialIndex index;
+
+    // Shape slots and points that some snapshot may still read. Writing below these copies the
+    // arrays first, so a snapshot never sees a change.
+    private int frozenSize = 0, frozenPointCount = 0;
+
+    // Per-thread drawing state, so several threads can draw from the same store at once
+    static class Scratch {
+        // Small direct-mapped cache so drawing does not create a Color per shape
+        private final Color[] colorCache = new Color[256];
+
+        // Arrays handed to Graphics2D, which needs polygon vertices starting at index 0
+        private int[] xs = new int[64], ys = new int[64];
+
+        Color color(int argb) {
+            int slot = (argb ^ (argb >>> 8) ^ (argb >>> 16)) & (colorCache.length - 1);
+            Color color = colorCache[slot];
+            if (color == null || color.getRGB() != argb) {
+                color = new Color(argb, true);
+                colorCache[slot] = color;
+            }
+            return color;
+        }
+    }
+
+    ShapeStore() {
+        index = new SpatialIndex();
+    }
+
+    private ShapeStore(ShapeStore source) {
+        types = source.types;
+        flags = source.flags;
+        x1s = source.x1s;
+        y1s = source.y1s;
+        x2s = source.x2s;
+        y2s = source.y2s;
+        strokeWidths = source.strokeWidths;
+        drawColors = source.drawColors;
+        fillColors = source.fillColors;
+        size = source.size;
+        pointXs = source.pointXs;
+        pointYs = source.pointYs;
+        pointCount = source.pointCount;
+        lodCache = source.lodCache;
+        index = null;
+    }
+
+    // Read-only view of the shapes as they are now, for drawing on another thread while this store
+    // keeps changing. It costs O(1): the arrays are shared until this store would overwrite part of
+    // them, i.e. when a shape is added after an undo. Snapshots have no spatial index, so query this
+    // store and draw the ids from the snapshot.
+    public ShapeStore snapshot() {
+        frozenSize = Math.max(frozenSize, size);
+        frozenPointCount = Math.max(frozenPointCount, pointCount);
+        return new ShapeStore(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Grows the per-shape columns up front, e.g. before loading a file whose shape count is known
+    public void ensureCapacity(int shapes) {
+        if (shapes > types.length) {
+            resize(shapes);
+        }
+    }
+
+    // Raw column access for serializers; for polygons and pencil strokes use the point accessors instead of the corners
+    public byte getType(int i) {
+        return types[i];
+    }
+
+    public int getX1(int i) {
+        return x1s[i];
+    }
+
+    public int getY1(int i) {
+        return y1s[i];
+    }
+
+    public int getX2(int i) {
+        return x2s[i];
+    }
+
+    public int getY2(int i) {
+        return y2s[i];
+    }
+
+    public int getStrokeWidth(int i) {
+        return strokeWidths[i];
+    }
+
+    public int getDrawArgb(int i) {
+        return drawColors[i];
+    }
+
+    public boolean isFilled(int i) {
+        return (flags[i] & FILLED) != 0;
+    }
+
+    public int getFillArgb(int i) {
+        return fillColors[i];
+    }
+
+    public int getPointCount(int i) {
+        return ShapeData.hasPoints(types[i]) ? y1s[i] : 0;
+    }
+
+    public int getPointX(int i, int point) {
+        return pointXs[x1s[i] + point];
+    }
+
+    public int getPointY(int i, int point) {
+        return pointYs[x1s[i] + point];
+    }
+
+    public void add(ShapeData shape) {
+        Color drawColor = shape.getDrawColor() != null ? shape.getDrawColor() : Color.BLACK;
+        Color fillColor = shape.getFillColor();
+        int fillArgb = fillColor != null ? fillColor.getRGB() : 0;
+        if (ShapeData.hasPoints(shape.getType())) {
+            addPoints(shape.getType(), shape.getPolygonX(), shape.getPolygonY(), shape.getPolygonCount(),
+                    drawColor.getRGB(), fillColor != null, fillArgb, shape.getStrokeWidth());
+        } else {
+            Point start = shape.getStart(), end = shape.getEnd();
+            addShape(shape.getType(), start.x, start.y, end.x, end.y,
+                    drawColor.getRGB(), fillColor != null, fillArgb, shape.getStrokeWidth());
+        }
+    }
+
+    // Adds a line, rectangle or oval given by its two corner points
+    public void addShape(byte type, int x1, int y1, int x2, int y2,
+                         int drawArgb, boolean filled, int fillArgb, int strokeWidth) {
+        int i = append(type, drawArgb, filled, fillArgb, strokeWidth);
+        x1s[i] = x1;
+        y1s[i] = y1;
+        x2s[i] = x2;
+        y2s[i] = y2;
+        indexShape(i, Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
+    }
+
+    public void addPolygon(int[] xs, int[] ys, int count,
+                           int drawArgb, boolean filled, int fillArgb, int strokeWidth) {
+        addPoints(ShapeData.POLYGON, xs, ys, count, drawArgb, filled, fillArgb, strokeWidth);
+    }
+
+    // Adds a polygon or pencil stroke; the points are copied into the shared buffers
+    public void addPoints(byte type, int[] xs, int[] ys, int count,
+                          int drawArgb, boolean filled, int fillArgb, int strokeWidth) {
+        int i = append(type, drawArgb, filled, fillArgb, strokeWidth);
+        boolean full = pointCount + count > pointXs.length;
+        if (full || pointCount < frozenPointCount) {
+            // Grow, or copy before overwriting points a snapshot can see
+            int newLength = full ? Math.max(pointCount + count, pointXs.length * 2) : pointXs.length;
+            pointXs = Arrays.copyOf(pointXs, newLength);
+            pointYs = Arrays.copyOf(pointYs, newLength);
+            frozenPointCount = 0;
+        }
+        System.arraycopy(xs, 0, pointXs, pointCount, count);
+        System.arraycopy(ys, 0, pointYs, pointCount, count);
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int p = 0; p < count; p++) {
+            minX = Math.min(minX, xs[p]);
+            minY = Math.min(minY, ys[p]);
+            maxX = Math.max(maxX, xs[p]);
+            maxY = Math.max(maxY, ys[p]);
+        }
+        // For point shapes the corners hold the offset and count of the point range, then the bounding box size
+        x1s[i] = pointCount;
+        y1s[i] = count;
+        x2s[i] = maxX - minX;
+        y2s[i] = maxY - minY;
+        pointCount += count;
+        indexShape(i, minX, minY, maxX, maxY);
+    }
+
+    // Shapes are only ever appended, so undo always removes the last one
+    public void removeLast() {
+        checkWritable();
+        int i = size - 1;
+        index.remove(i);
+        if (ShapeData.hasPoints(types[i])) {
+            pointCount = x1s[i];
+        }
+        size--;
+    }
+
+    // Rebuilds a standalone ShapeData, e.g. so an undone shape can be redone later
+    public ShapeData get(int i) {
+        Color drawColor = new Color(drawColors[i], true);
+        Color fillColor = (flags[i] & FILLED) != 0 ? new Color(fillColors[i], true) : null;
+        if (ShapeData.hasPoints(types[i])) {
+            int offset = x1s[i], count = y1s[i];
+            return new ShapeData(types[i], Arrays.copyOfRange(pointXs, offset, offset + count),
+                    Arrays.copyOfRange(pointYs, offset, offset + count), count, drawColor, fillColor, strokeWidths[i]);
+        }
+        return new ShapeData(new Point(x1s[i], y1s[i]), new Point(x2s[i], y2s[i]), types[i],
+                drawColor, fillColor, strokeWidths[i]);
+    }
+
+    // Collects the shapes touching the box, in drawing order
+    public void query(int minX, int minY, int maxX, int maxY, IntList result) {
+        if (index == null) {
+            throw new IllegalStateException("Snapshots have no spatial index");
+        }
+        index.query(minX, minY, maxX, maxY, result);
+    }
+
+    // Safe to call from several threads at once as long as each passes its own scratch and nobody adds or removes
+    public void draw(int i, Graphics2D g2d, Scratch scratch) {
+        Color drawColor = scratch.color(drawColors[i]);
+        Color fillColor = (flags[i] & FILLED) != 0 ? scratch.color(fillColors[i]) : null;
+        if (ShapeData.hasPoints(types[i])) {
+            int count = copyPoints(i, scratch);
+            ShapeData.draw(g2d, types[i], 0, 0, 0, 0, scratch.xs, scratch.ys, count,
+                    drawColor, fillColor, strokeWidths[i]);
+        } else {
+            ShapeData.draw(g2d, types[i], x1s[i], y1s[i], x2s[i], y2s[i], null, null, 0,
+                    drawColor, fillColor, strokeWidths[i]);
+        }
+    }
+
+    // Draws with less detail when zoomed out (scale below 1), where the difference is not visible:
+    // sub-pixel shapes become one dot, strokes thinner than a pixel become hairlines and dense
+    // polygons are simplified. Returns false if the shape was reduced to a dot.
+    public boolean draw(int i, Graphics2D g2d, Scratch scratch, double scale) {
+        if (scale >= 1) {
+            draw(i, g2d, scratch);
+            return true;
+        }
+        byte type = types[i];
+        boolean points = ShapeData.hasPoints(type);
+        if (isDot(i, scale)) {
+            int x = points ? pointXs[x1s[i]] : x1s[i];
+            int y = points ? pointYs[x1s[i]] : y1s[i];
+            int dot = (int) Math.ceil(1 / scale);
+            g2d.setColor(scratch.color(drawColors[i]));
+            g2d.fillRect(x, y, dot, dot);
+            return false;
+        }
+
+        Color drawColor = scratch.color(drawColors[i]);
+        Color fillColor = (flags[i] & FILLED) != 0 ? scratch.color(fillColors[i]) : null;
+        BasicStroke stroke = ShapeData.stroke(type, lodStrokeWidth(i, scale));
+        if (points && y1s[i] > LOD_MIN_SIMPLIFY_POINTS) {
+            Simplified simplified = simplified(i, scale);
+            ShapeData.draw(g2d, type, 0, 0, 0, 0, simplified.xs, simplified.ys, simplified.count,
+                    drawColor, fillColor, stroke);
+        } else if (points) {
+            int count = copyPoints(i, scratch);
+            ShapeData.draw(g2d, type, 0, 0, 0, 0, scratch.xs, scratch.ys, count, drawColor, fillColor, stroke);
+        } else {
+            ShapeData.draw(g2d, type, x1s[i], y1s[i], x2s[i], y2s[i], null, null, 0, drawColor, fillColor, stroke);
+        }
+        return true;
+    }
+
+    // True if draw() at this scale reduces the shape to a single dot. The stroke counts towards the
+    // size, so a click with a wide brush still draws its full blob.
+    public boolean isDot(int i, double scale) {
+        if (scale >= 1) {
+            return false;
+        }
+        int extent = ShapeData.hasPoints(types[i]) ? Math.max(x2s[i], y2s[i])
+                : Math.max(Math.abs(x1s[i] - x2s[i]), Math.abs(y1s[i] - y2s[i]));
+        return (extent + strokeWidths[i]) * scale < LOD_MIN_PIXELS;
+    }
+
+    // The stroke width draw() uses at this scale: strokes thinner than a pixel become hairlines
+    public int lodStrokeWidth(int i, double scale) {
+        return scale < 1 && strokeWidths[i] * scale <= 1 ? 0 : strokeWidths[i];
+    }
+
+    // Copies a point shape's points to the start of the scratch arrays and returns how many there are
+    private int copyPoints(int i, Scratch scratch) {
+        int offset = x1s[i], count = y1s[i];
+        if (count > scratch.xs.length) {
+            scratch.xs = new int[count];
+            scratch.ys = new int[count];
+        }
+        System.arraycopy(pointXs, offset, scratch.xs, 0, count);
+        System.arraycopy(pointYs, offset, scratch.ys, 0, count);
+        return count;
+    }
+
+    // Zoom buckets are half an octave wide; the tolerance is taken at the top of the bucket
+    // so the simplified outline stays within LOD_TOLERANCE pixels anywhere in it
+    private Simplified simplified(int i, double scale) {
+        int bucket = (int) Math.floor(Math.log(scale) / LOG_2 * 2);
+        Simplified simplified = lodCache[i];
+        if (simplified == null || simplified.bucket != bucket) {
+            double tolerance = LOD_TOLERANCE / Math.pow(2, (bucket + 1) / 2.0);
+            int count = y1s[i];
+            int[] xs = new int[count], ys = new int[count];
+            int kept = PolylineSimplifier.simplify(pointXs, pointYs, x1s[i], count, tolerance, xs, ys);
+            simplified = new Simplified(bucket, Arrays.copyOf(xs, kept), Arrays.copyOf(ys, kept), kept);
+            lodCache[i] = simplified;
+        }
+        return simplified;
+    }
+
+    private int append(byte type, int drawArgb, boolean filled, int fillArgb, int strokeWidth) {
+        checkWritable();
+        if (size == types.length) {
+            resize(size * 2);
+        } else if (size < frozenSize) {
+            resize(types.length); // Copy before overwriting a slot a snapshot can see
+        }
+        int i = size++;
+        lodCache[i] = null;
+        types[i] = type;
+        flags[i] = filled ? FILLED : 0;
+        strokeWidths[i] = strokeWidth;
+        drawColors[i] = drawArgb;
+        fillColors[i] = fillArgb;
+        return i;
+    }
+
+    private void resize(int newLength) {
+        types = Arrays.copyOf(types, newLength);
+        flags = Arrays.copyOf(flags, newLength);
+        x1s = Arrays.copyOf(x1s, newLength);
+        y1s = Arrays.copyOf(y1s, newLength);
+        x2s = Arrays.copyOf(x2s, newLength);
+        y2s = Arrays.copyOf(y2s, newLength);
+        strokeWidths = Arrays.copyOf(strokeWidths, newLength);
+        drawColors = Arrays.copyOf(drawColors, newLength);
+        fillColors = Arrays.copyOf(fillColors, newLength);
+        lodCache = Arrays.copyOf(lodCache, newLength);
+        frozenSize = 0;
+    }
+
+    private void checkWritable() {
+        if (index == null) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+
+    private void indexShape(int i, int minX, int minY, int maxX, int maxY) {
+        int pad = ShapeData.boundsPad(types[i], strokeWidths[i]);
+        index.insert(i, minX - pad, minY - pad, maxX + pad, maxY + pad);
+    }
+}
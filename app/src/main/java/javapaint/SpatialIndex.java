@@ -0,0 +1,137 @@
+package javapaint;
+
+import java.util.Arrays;
+
+// Quadtree over shape bounding boxes, keyed by the shape's position in the scene.
+// Boxes that straddle a split line stay in the parent node; boxes outside the world stay in the root.
+class SpatialIndex {
+    private static final int WORLD = 1 << 24;
+    private static final int NODE_CAPACITY = 16;
+    private static final int MAX_DEPTH = 20;
+
+    private int[] minXs = new int[64], minYs = new int[64], maxXs = new int[64], maxYs = new int[64];
+    private final Node root = new Node(-WORLD, -WORLD, WORLD, WORLD, 0);
+    private int count = 0;
+
+    private class Node {
+        final int minX, minY, maxX, maxY, depth;
+        final IntList ids = new IntList(4);
+        Node[] children;
+
+        Node(int minX, int minY, int maxX, int maxY, int depth) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.depth = depth;
+        }
+
+        boolean contains(int id) {
+            return minXs[id] >= minX && maxXs[id] < maxX && minYs[id] >= minY && maxYs[id] < maxY;
+        }
+
+        boolean intersects(int qMinX, int qMinY, int qMaxX, int qMaxY) {
+            return qMinX < maxX && qMaxX >= minX && qMinY < maxY && qMaxY >= minY;
+        }
+
+        // Deepest existing child that fully contains the box, or null if it has to stay here
+        Node childFor(int id) {
+            if (children != null) {
+                for (Node child : children) {
+                    if (child.contains(id)) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+
+        void split() {
+            int midX = (int) (((long) minX + maxX) >> 1);
+            int midY = (int) (((long) minY + maxY) >> 1);
+            children = new Node[] {
+                    new Node(minX, minY, midX, midY, depth + 1),
+                    new Node(midX, minY, maxX, midY, depth + 1),
+                    new Node(minX, midY, midX, maxY, depth + 1),
+                    new Node(midX, midY, maxX, maxY, depth + 1)
+            };
+            IntList old = new IntList(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                old.add(ids.get(i));
+            }
+            ids.clear();
+            for (int i = 0; i < old.size(); i++) {
+                int id = old.get(i);
+                Node child = childFor(id);
+                (child != null ? child : this).ids.add(id);
+            }
+        }
+    }
+
+    public void insert(int id, int minX, int minY, int maxX, int maxY) {
+        ensureCapacity(id + 1);
+        minXs[id] = minX;
+        minYs[id] = minY;
+        maxXs[id] = maxX;
+        maxYs[id] = maxY;
+
+        Node node = root;
+        for (Node child = node.childFor(id); child != null; child = node.childFor(id)) {
+            node = child;
+        }
+        node.ids.add(id);
+        if (node.children == null && node.ids.size() > NODE_CAPACITY && node.depth < MAX_DEPTH) {
+            node.split();
+        }
+        count++;
+    }
+
+    // The id must currently be in the index with the bounds it was inserted with
+    public void remove(int id) {
+        Node node = root;
+        for (Node child = node.childFor(id); child != null; child = node.childFor(id)) {
+            node = child;
+        }
+        if (node.ids.removeValue(id)) {
+            count--;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Collects the ids whose bounds intersect the query box, sorted so callers can draw them in z-order
+    public void query(int minX, int minY, int maxX, int maxY, IntList result) {
+        result.clear();
+        collect(root, minX, minY, maxX, maxY, result);
+        result.sort();
+    }
+
+    private void collect(Node node, int qMinX, int qMinY, int qMaxX, int qMaxY, IntList result) {
+        IntList ids = node.ids;
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            if (minXs[id] <= qMaxX && maxXs[id] >= qMinX && minYs[id] <= qMaxY && maxYs[id] >= qMinY) {
+                result.add(id);
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                if (child.intersects(qMinX, qMinY, qMaxX, qMaxY)) {
+                    collect(child, qMinX, qMinY, qMaxX, qMaxY, result);
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > minXs.length) {
+            int newLength = Math.max(capacity, minXs.length * 2);
+            minXs = Arrays.copyOf(minXs, newLength);
+            minYs = Arrays.copyOf(minYs, newLength);
+            maxXs = Arrays.copyOf(maxXs, newLength);
+            maxYs = Arrays.copyOf(maxYs, newLength);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package javapaint;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Renders the committed scene off screen in fixed-size tiles on a fork/join pool.
+// Each tile only draws the shapes whose bounds touch it, and nothing here needs a window,
+// so it works headless as well.
+class TileRenderer {
+    static final int DEFAULT_TILE_SIZE = 256;
+
+    // Receives finished rows of tiles from top to bottom. The band image is reused once the call returns.
+    interface BandSink {
+        void accept(int y, BufferedImage band, int height) throws IOException;
+    }
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final ThreadLocal<Worker> workers;
+
+    // Antialiased like the canvas when idle, so exports match the screen; off uses the faster hints
+    // the canvas uses while the user is interacting
+    private volatile boolean highQuality = true;
+
+    // Tile image and renderer owned by one pool thread
+    private static class Worker {
+        final BufferedImage tile;
+        final SceneRenderer renderer = new SceneRenderer();
+        final Rectangle region = new Rectangle();
+
+        Worker(int tileSize) {
+            tile = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+    TileRenderer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    TileRenderer(ForkJoinPool pool, int tileSize) {
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.workers = ThreadLocal.withInitial(() -> new Worker(tileSize));
+    }
+
+    static int outputSize(int canvasSize, double scale) {
+        return Math.max(1, (int) Math.ceil(canvasSize * scale));
+    }
+
+    public boolean isHighQuality() {
+        return highQuality;
+    }
+
+    public void setHighQuality(boolean highQuality) {
+        this.highQuality = highQuality;
+    }
+
+    // Streams the scene one band of tiles at a time, so the full image never has to exist in memory.
+    // The store must not change while this runs.
+    public void render(ShapeStore shapes, Color background, int canvasWidth, int canvasHeight, double scale,
+                       BandSink sink) throws IOException {
+        int width = outputSize(canvasWidth, scale);
+        int height = outputSize(canvasHeight, scale);
+        int columns = (width + tileSize - 1) / tileSize;
+        BufferedImage band = new BufferedImage(width, Math.min(tileSize, height), BufferedImage.TYPE_INT_RGB);
+
+        for (int y = 0; y < height; y += tileSize) {
+            int bandHeight = Math.min(tileSize, height - y);
+            pool.invoke(new BandTask(shapes, background, scale, highQuality, band, width, y, bandHeight, 0, columns));
+            sink.accept(y, band, bandHeight);
+        }
+    }
+
+    // Convenience for scenes small enough to hold as one image
+    public BufferedImage renderImage(ShapeStore shapes, Color background, int canvasWidth, int canvasHeight, double scale) {
+        BufferedImage image = new BufferedImage(outputSize(canvasWidth, scale), outputSize(canvasHeight, scale),
+                BufferedImage.TYPE_INT_RGB);
+        try {
+            render(shapes, background, canvasWidth, canvasHeight, scale,
+                    (y, band, height) -> image.getRaster().setDataElements(0, y,
+                            band.getRaster().createChild(0, 0, band.getWidth(), height, 0, 0, null)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // The sink above never throws
+        }
+        return image;
+    }
+
+    private class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ShapeStore shapes;
+        private final Color background;
+        private final double scale;
+        private final boolean highQuality;
+        private final BufferedImage band;
+        private final int width, y, bandHeight, firstColumn, lastColumn;
+
+        BandTask(ShapeStore shapes, Color background, double scale, boolean highQuality, BufferedImage band,
+                 int width, int y, int bandHeight, int firstColumn, int lastColumn) {
+            this.shapes = shapes;
+            this.background = background;
+            this.scale = scale;
+            this.highQuality = highQuality;
+            this.band = band;
+            this.width = width;
+            this.y = y;
+            this.bandHeight = bandHeight;
+            this.firstColumn = firstColumn;
+            this.lastColumn = lastColumn;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastColumn - firstColumn > 1) {
+                int middle = (firstColumn + lastColumn) >>> 1;
+                invokeAll(new BandTask(shapes, background, scale, highQuality, band, width, y, bandHeight,
+                                firstColumn, middle),
+                        new BandTask(shapes, background, scale, highQuality, band, width, y, bandHeight,
+                                middle, lastColumn));
+                return;
+            }
+            int x = firstColumn * tileSize;
+            int tileWidth = Math.min(tileSize, width - x);
+            Worker worker = workers.get();
+            renderTile(worker, shapes, background, scale, highQuality, x, y, tileWidth, bandHeight);
+            // Tiles cover disjoint parts of the band, so copying them in concurrently is safe
+            band.getRaster().setDataElements(x, 0,
+                    worker.tile.getRaster().createChild(0, 0, tileWidth, bandHeight, 0, 0, null));
+        }
+    }
+
+    private static void renderTile(Worker worker, ShapeStore shapes, Color background, double scale,
+                                   boolean highQuality, int x, int y, int width, int height) {
+        Graphics2D g2d = worker.tile.createGraphics();
+        SceneRenderer.setQuality(g2d, highQuality);
+        worker.region.setBounds(x, y, width, height);
+        worker.renderer.render(g2d, shapes, background, scale, 1.0, worker.region);
+        g2d.dispose();
+    }
+}
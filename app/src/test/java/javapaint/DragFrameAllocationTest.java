@@ -0,0 +1,84 @@
+package javapaint;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A drag frame updates the reused preview shape in place, draws it and reports its bounds for the
+// repaint. None of that may allocate once the JIT has warmed up, or dragging feeds the collector.
+class DragFrameAllocationTest {
+    // Frames are measured in batches until one allocates nothing, so the JIT gets as long as it needs
+    private static final int BATCH_FRAMES = 5_000, MAX_BATCHES = 60, OVAL_BATCHES = 8;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Point start = new Point(100, 100);
+    private final Rectangle bounds = new Rectangle();
+    private BufferedImage image;
+    private Graphics2D g2d;
+
+    @BeforeEach
+    void setUp() {
+        image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_ARGB);
+        g2d = image.createGraphics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        g2d.dispose();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Line", "Rectangle"})
+    void dragFramesDoNotAllocate(String type) {
+        ShapeData preview = new ShapeData(new Point(), new Point(), type, Color.BLACK, null, 2);
+        assertEquals(0, bytesPerFrame(frame -> dragFrame(preview, type, frame), MAX_BATCHES), 0.0);
+    }
+
+    // Java2D allocates path iterators inside drawOval() and fillOval() themselves, so an oval frame
+    // can only promise not to allocate anything on top of those two calls
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2})
+    void ovalFramesAllocateNoMoreThanJava2D(int strokeWidth) {
+        ShapeData preview = new ShapeData(new Point(), new Point(), "Oval", Color.BLACK, null, strokeWidth);
+        double preview2d = bytesPerFrame(frame -> dragFrame(preview, "Oval", frame), OVAL_BATCHES);
+        g2d.setStroke(ShapeData.stroke(strokeWidth));
+        double java2d = bytesPerFrame(frame -> {
+            g2d.drawOval(start.x, start.y, frame, frame / 2);
+            g2d.fillOval(start.x, start.y, frame, frame / 2);
+        }, OVAL_BATCHES);
+        assertTrue(preview2d <= java2d, preview2d + " bytes per oval frame, Java2D alone " + java2d);
+    }
+
+    private void dragFrame(ShapeData preview, String type, int frame) {
+        preview.update(start, start.x + frame, start.y + frame / 2, type, Color.BLACK, Color.RED, 2);
+        preview.drawShape(g2d);
+        preview.getBounds(bounds);
+    }
+
+    private interface Frame {
+        void draw(int frame);
+    }
+
+    // The lowest allocation per frame of any batch
+    private double bytesPerFrame(Frame frame, int maxBatches) {
+        long thread = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int batch = 0; batch < maxBatches && least > 0; batch++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < BATCH_FRAMES; i++) {
+                frame.draw(i & 511);
+            }
+            least = Math.min(least, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        return least / (double) BATCH_FRAMES;
+    }
+}
@@ -0,0 +1,87 @@
+package javapaint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SceneBinaryTest {
+    // Offsets into a file written by SceneBinary.write()
+    private static final int SHAPE_COUNT = 4 + 2 + 4 + 12;
+    private static final int FIRST_RECORD = SHAPE_COUNT + 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWhatItWrites() throws IOException {
+        Scene scene = read(write());
+        ShapeStore shapes = scene.getShapes();
+        assertEquals(2, shapes.size());
+        assertEquals(ShapeData.RECTANGLE, shapes.getType(0));
+        assertEquals(30, shapes.getY2(0));
+        assertEquals(0x80FF0000, shapes.getFillArgb(0));
+        assertEquals(3, shapes.getPointCount(1));
+        assertEquals(9, shapes.getPointY(1, 2));
+        assertEquals(new Color(0x123456), scene.getBackground());
+    }
+
+    @Test
+    void rejectsRecordLengthsThatLoopOrOverrun() throws IOException {
+        byte[] file = write();
+        for (int length : new int[]{-4, 0, 7, Integer.MAX_VALUE}) {
+            ByteBuffer.wrap(file).putInt(FIRST_RECORD, length);
+            assertThrows(IOException.class, () -> read(file), "record length " + length);
+        }
+    }
+
+    @Test
+    void rejectsShapeCountsTheFileCannotHold() throws IOException {
+        byte[] file = write();
+        for (int count : new int[]{-1, 1_000_000, Integer.MAX_VALUE}) {
+            ByteBuffer.wrap(file).putInt(SHAPE_COUNT, count);
+            assertThrows(IOException.class, () -> read(file), "shape count " + count);
+        }
+    }
+
+    @Test
+    void rejectsPointCountsPastTheRecord() throws IOException {
+        byte[] file = write();
+        int polygon = FIRST_RECORD + 4 + ByteBuffer.wrap(file).getInt(FIRST_RECORD);
+        int count = polygon + 4 + 8; // Type, flags, stroke and draw colour come first
+        for (int points : new int[]{-1, 4, Integer.MAX_VALUE}) {
+            ByteBuffer.wrap(file).putInt(count, points);
+            assertThrows(IOException.class, () -> read(file), "point count " + points);
+        }
+    }
+
+    // A negative width would throw from BasicStroke on every render of the loaded scene
+    @Test
+    void rejectsNegativeStrokeWidths() throws IOException {
+        byte[] file = write();
+        ByteBuffer.wrap(file).putShort(FIRST_RECORD + 4 + 2, (short) -3); // After the length, type and flags
+        assertThrows(IOException.class, () -> read(file));
+    }
+
+    private byte[] write() throws IOException {
+        ShapeStore shapes = new ShapeStore();
+        shapes.addShape(ShapeData.RECTANGLE, 10, 20, 5, 30, 0xFF000000, true, 0x80FF0000, 2);
+        shapes.addPoints(ShapeData.POLYGON, new int[]{1, 2, 3}, new int[]{7, 8, 9}, 3, 0xFF0000FF, false, 0, 1);
+        Path path = directory.resolve("scene.jpaint");
+        SceneBinary.write(path, new Scene(shapes, new Color(0x123456), 640, 480));
+        return Files.readAllBytes(path);
+    }
+
+    private Scene read(byte[] file) throws IOException {
+        Path path = directory.resolve("read.jpaint");
+        Files.write(path, file);
+        return SceneBinary.read(path);
+    }
+}
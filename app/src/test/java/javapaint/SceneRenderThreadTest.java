@@ -0,0 +1,62 @@
+package javapaint;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SceneRenderThreadTest {
+    private static final Rectangle REGION = new Rectangle(0, 0, 64, 48);
+
+    private final Semaphore frames = new Semaphore(0);
+    private final SceneRenderThread thread = new SceneRenderThread(frames::release);
+
+    // Undone shapes must not show through a translucent canvas when a recycled image is drawn into again
+    @Test
+    void translucentBackgroundReplacesTheLastFrame() throws InterruptedException {
+        Color background = new Color(0x80808080, true);
+        ShapeStore shapes = new ShapeStore();
+        shapes.addShape(ShapeData.RECTANGLE, 0, 0, 64, 48, 0xFFFF0000, true, 0xFFFF0000, 1);
+        SceneRenderThread.Frame first = render(shapes.snapshot(), background);
+        assertEquals(0xFFFF0000, first.getImage().getRGB(10, 10));
+        thread.recycle(first);
+
+        shapes.removeLast();
+        SceneRenderThread.Frame second = render(shapes.snapshot(), background);
+        assertSame(first.getImage(), second.getImage());
+        BufferedImage image = second.getImage();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(0xFF808080, image.getRGB(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    // A shape that throws while drawing must not stop the thread that draws every later frame
+    @Test
+    void keepsRenderingAfterAFrameFails() throws InterruptedException {
+        ShapeStore broken = new ShapeStore();
+        broken.addShape(ShapeData.LINE, 0, 0, 10, 10, 0xFF000000, false, 0, -1);
+        thread.submit(broken.snapshot(), null, Color.WHITE, 1.0, 1.0, REGION, 0, false);
+        Thread.sleep(200); // Lets the thread take it up before the next request would replace it
+
+        ShapeStore shapes = new ShapeStore();
+        shapes.addShape(ShapeData.RECTANGLE, 0, 0, 64, 48, 0xFF0000FF, true, 0xFF0000FF, 1);
+        assertEquals(0xFF0000FF, render(shapes.snapshot(), Color.WHITE).getImage().getRGB(10, 10));
+    }
+
+    private SceneRenderThread.Frame render(ShapeStore shapes, Color background) throws InterruptedException {
+        thread.submit(shapes, null, background, 1.0, 1.0, REGION, 0, false);
+        assertTrue(frames.tryAcquire(10, TimeUnit.SECONDS));
+        SceneRenderThread.Frame frame = thread.takeFrame();
+        assertNotNull(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,108 @@
+package javapaint;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SceneRendererTest {
+    private static final int WIDTH = 300, HEIGHT = 200;
+
+    // Batching must only change how shapes reach Java2D, never the pixels, whether the whole canvas
+    // is drawn or one tile of it
+    @ParameterizedTest
+    @CsvSource({"0.5, false", "1, false", "1.3, false", "2, false", "3, false",
+            "0.5, true", "1, true", "1.3, true", "2, true", "3, true"})
+    void batchingDrawsTheSamePixels(double scale, boolean antialiased) {
+        for (long seed = 1; seed <= 20; seed++) {
+            ShapeStore shapes = scene(seed);
+            int width = (int) Math.ceil(WIDTH * scale), height = (int) Math.ceil(HEIGHT * scale);
+            for (Rectangle region : new Rectangle[]{new Rectangle(0, 0, width, height),
+                    new Rectangle(width / 3, height / 4, width / 3, height / 2)}) {
+                int[] unbatched = render(shapes, scale, antialiased, false, region);
+                int[] batched = render(shapes, scale, antialiased, true, region);
+                assertEquals(0, differences(unbatched, batched), "pixels differing for seed " + seed + " in " + region);
+            }
+        }
+    }
+
+    // Level of detail may only drop what cannot be seen: a click with a wide brush is a big blob even
+    // though its points all coincide, so zoomed out it must look as it does at full detail
+    @ParameterizedTest
+    @CsvSource({"0.9, false", "0.9, true", "0.5, false", "0.5, true", "0.2, false"})
+    void levelOfDetailKeepsWideClickedShapes(double scale, boolean antialiased) {
+        ShapeStore shapes = new ShapeStore();
+        shapes.addShape(ShapeData.RECTANGLE, 40, 40, 40, 40, 0xFF000000, false, 0, 10);
+        shapes.addShape(ShapeData.LINE, 120, 40, 120, 40, 0xFFCC2200, false, 0, 6);
+        shapes.addPoints(ShapeData.PENCIL, new int[]{200, 200}, new int[]{40, 40}, 2, 0xFF336699, false, 0, 8);
+        shapes.addShape(ShapeData.OVAL, 40, 120, 41, 120, 0xFF000000, true, 0xFFCC2200, 12);
+        int width = (int) Math.ceil(WIDTH * scale), height = (int) Math.ceil(HEIGHT * scale);
+        Rectangle region = new Rectangle(0, 0, width, height);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        SceneRenderer.setQuality(g2d, antialiased);
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, width, height);
+        g2d.scale(scale, scale);
+        ShapeStore.Scratch scratch = new ShapeStore.Scratch();
+        for (int i = 0; i < shapes.size(); i++) {
+            shapes.draw(i, g2d, scratch); // Full detail
+        }
+        g2d.dispose();
+        int[] fullDetail = image.getRGB(0, 0, width, height, null, 0, width);
+
+        assertEquals(0, differences(fullDetail, render(shapes, scale, antialiased, true, region)));
+    }
+
+    // Few colours and strokes so that batches form, with overlaps, clicked (zero-size) rectangles and
+    // lines, and the odd oval or polygon in between
+    private static ShapeStore scene(long seed) {
+        Random random = new Random(seed);
+        int[] colours = {0xFF000000, 0xFF404040, 0xFFDDEEFF, 0xFFCC2200, 0x80336699};
+        ShapeStore shapes = new ShapeStore();
+        for (int i = 0; i < 400; i++) {
+            int x = random.nextInt(WIDTH), y = random.nextInt(HEIGHT);
+            int size = random.nextInt(4) == 0 ? 0 : random.nextInt(40);
+            int x2 = x + (random.nextBoolean() ? size : random.nextInt(size + 1));
+            int y2 = y + (random.nextBoolean() ? size : random.nextInt(size + 1));
+            int draw = colours[random.nextInt(colours.length)], fill = colours[random.nextInt(colours.length)];
+            int stroke = random.nextInt(3) == 0 ? 1 + random.nextInt(4) : 1;
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                int[] xs = {x, x + 15, x + 5}, ys = {y, y + 5, y + 20};
+                shapes.addPoints(ShapeData.POLYGON, xs, ys, 3, draw, random.nextBoolean(), fill, stroke);
+            } else {
+                byte type = kind == 1 ? ShapeData.OVAL : kind < 10 ? ShapeData.LINE : ShapeData.RECTANGLE;
+                shapes.addShape(type, x, y, x2, y2, draw, random.nextBoolean(), fill, stroke);
+            }
+        }
+        return shapes;
+    }
+
+    private static int[] render(ShapeStore shapes, double scale, boolean antialiased, boolean batching,
+                                Rectangle region) {
+        BufferedImage image = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        SceneRenderer.setQuality(g2d, antialiased);
+        SceneRenderer renderer = new SceneRenderer();
+        renderer.setBatching(batching);
+        renderer.render(g2d, shapes, Color.WHITE, scale, 1.0, region);
+        g2d.dispose();
+        return image.getRGB(0, 0, region.width, region.height, null, 0, region.width);
+    }
+
+    private static int differences(int[] expected, int[] actual) {
+        int count = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,155 @@
+package javapaint;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SceneSvgTest {
+    private static final int WIDTH = 400, HEIGHT = 300;
+
+    // Every shape type, including pencil strokes, translucent colours, reversed corners and clicked
+    // shapes, must come back drawing exactly the same pixels
+    @Test
+    void roundTripDrawsTheSamePixels() throws IOException {
+        for (long seed = 1; seed <= 10; seed++) {
+            Scene scene = scene(seed);
+            Scene copy = roundTrip(scene);
+            assertEquals(scene.getShapes().size(), copy.getShapes().size());
+            assertEquals(scene.getBackground(), copy.getBackground());
+            assertEquals(WIDTH, copy.getWidth());
+            assertEquals(HEIGHT, copy.getHeight());
+            for (boolean antialiased : new boolean[]{false, true}) {
+                assertArrayEquals(pixels(scene, antialiased), pixels(copy, antialiased), "seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void skipsContentThatIsNotDrawnAndAppliesTranslations() throws IOException {
+        ShapeStore shapes = read("<svg xmlns='http://www.w3.org/2000/svg' width='100' height='100'>"
+                + "<defs><clipPath id='c'><rect width='10' height='10'/></clipPath></defs>"
+                + "<symbol id='s'><line x1='0' y1='0' x2='5' y2='5' stroke='blue'/></symbol>"
+                + "<g transform='translate(40,40)'><rect width='20' height='10' fill='red'/></g>"
+                + "</svg>").getShapes();
+        assertEquals(1, shapes.size());
+        assertEquals(ShapeData.RECTANGLE, shapes.getType(0));
+        assertEquals(40, shapes.getX1(0));
+        assertEquals(40, shapes.getY1(0));
+        assertEquals(60, shapes.getX2(0));
+        assertEquals(50, shapes.getY2(0));
+        assertEquals(0xFFFF0000, shapes.getFillArgb(0));
+    }
+
+    @Test
+    void appliesScalesMatricesAndViewBoxes() throws IOException {
+        ShapeStore shapes = read("<svg xmlns='http://www.w3.org/2000/svg' width='200' height='100' viewBox='0 0 100 50'>"
+                + "<g transform='translate(5) scale(2, 3)' stroke='black' fill='none'>"
+                + "<line x1='1' y1='1' x2='2' y2='2'/>"
+                + "<polyline points='0,0 1,1' transform='matrix(1 0 0 1 10 20)'/>"
+                + "</g></svg>").getShapes();
+        // viewBox doubles everything, then translate(5) and scale(2, 3)
+        assertEquals(14, shapes.getX1(0));
+        assertEquals(6, shapes.getY1(0));
+        assertEquals(18, shapes.getX2(0));
+        assertEquals(12, shapes.getY2(0));
+        assertEquals(5, shapes.getStrokeWidth(0)); // 1 scaled by 2 * sqrt(2 * 3)
+        assertEquals(ShapeData.PENCIL, shapes.getType(1));
+        assertEquals(10 + 4 * 10, shapes.getPointX(1, 0));
+        assertEquals(6 * 20 + 6, shapes.getPointY(1, 1));
+    }
+
+    // Negative widths are invalid SVG and keep the inherited one; huge ones are capped at what a scene
+    // file can hold, so the import can neither break rendering nor change on save
+    @Test
+    void keepsStrokeWidthsInRange() throws IOException {
+        ShapeStore shapes = read("<svg xmlns='http://www.w3.org/2000/svg' stroke='black' stroke-width='3'>"
+                + "<line x2='10' y2='10' stroke-width='-5'/>"
+                + "<line x2='10' y2='10' stroke-width='1e9'/>"
+                + "<g transform='scale(100000)'><line x2='1' y2='1'/></g>"
+                + "<line x2='10' y2='10' stroke-width='Infinity'/>"
+                + "</svg>").getShapes();
+        assertEquals(3, shapes.getStrokeWidth(0));
+        for (int i = 1; i < shapes.size(); i++) {
+            assertEquals(ShapeData.MAX_STROKE_WIDTH, shapes.getStrokeWidth(i), "shape " + i);
+        }
+        assertEquals(4, shapes.size());
+    }
+
+    @Test
+    void rejectsRotationsInsteadOfImportingThemOutOfPlace() {
+        for (String transform : new String[]{"rotate(45)", "skewX(10)", "matrix(0 1 -1 0 0 0)", "perspective(2)"}) {
+            assertThrows(IOException.class, () -> read("<svg xmlns='http://www.w3.org/2000/svg'>"
+                    + "<g transform='" + transform + "'><rect width='1' height='1'/></g></svg>"), transform);
+        }
+    }
+
+    @Test
+    void rejectsOtherDocuments() {
+        assertThrows(IOException.class, () -> read("<html><body/></html>"));
+        assertThrows(IOException.class, () -> read("<svg xmlns='http://www.w3.org/2000/svg'><rect"));
+    }
+
+    private static Scene scene(long seed) {
+        Random random = new Random(seed);
+        ShapeStore shapes = new ShapeStore();
+        for (int i = 0; i < 300; i++) {
+            byte type = (byte) random.nextInt(ShapeData.PENCIL + 1);
+            int draw = colour(random), fill = colour(random);
+            boolean filled = random.nextBoolean();
+            int stroke = random.nextInt(6);
+            int x = random.nextInt(WIDTH), y = random.nextInt(HEIGHT);
+            if (ShapeData.hasPoints(type)) {
+                int count = 1 + random.nextInt(30);
+                int[] xs = new int[count], ys = new int[count];
+                for (int p = 0; p < count; p++) {
+                    xs[p] = x + random.nextInt(81) - 40;
+                    ys[p] = y + random.nextInt(81) - 40;
+                }
+                shapes.addPoints(type, xs, ys, count, draw, filled, fill, stroke);
+            } else {
+                int size = random.nextInt(5) == 0 ? 0 : 60;
+                shapes.addShape(type, x, y, x + random.nextInt(2 * size + 1) - size,
+                        y + random.nextInt(2 * size + 1) - size, draw, filled, fill, stroke);
+            }
+        }
+        return new Scene(shapes, new Color(colour(random), true), WIDTH, HEIGHT);
+    }
+
+    // Opaque half the time, otherwise any alpha
+    private static int colour(Random random) {
+        int alpha = random.nextBoolean() ? 0xFF : random.nextInt(256);
+        return alpha << 24 | random.nextInt(0x1000000);
+    }
+
+    private static Scene roundTrip(Scene scene) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SceneSvg.write(out, scene);
+        assertFalse(out.toString(StandardCharsets.UTF_8).contains("transform"));
+        return SceneSvg.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static Scene read(String svg) throws IOException {
+        return SceneSvg.read(new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static int[] pixels(Scene scene, boolean antialiased) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        SceneRenderer.setQuality(g2d, antialiased);
+        new SceneRenderer().render(g2d, scene.getShapes(), scene.getBackground(), 1.0, 1.0,
+                new Rectangle(0, 0, WIDTH, HEIGHT));
+        g2d.dispose();
+        return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+}
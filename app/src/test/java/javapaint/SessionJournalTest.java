@@ -0,0 +1,91 @@
+package javapaint;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SessionJournalTest {
+    @TempDir
+    Path directory;
+
+    // The live canvas (the store passed as initial) stays as it is until the user has answered
+    private ShapeStore canvas = new ShapeStore();
+    private Color background = Color.WHITE;
+    private volatile String failure;
+
+    @Test
+    void nothingToRecoverInANewDirectory() throws IOException {
+        SessionJournal journal = open();
+        assertNull(journal.getRecoveredScene());
+        journal.close();
+    }
+
+    @Test
+    void restoresTheLastSession() throws IOException {
+        drawLastSession();
+
+        SessionJournal journal = open();
+        Scene recovered = journal.getRecoveredScene();
+        assertEquals(0, canvas.size());
+        assertEquals(1, recovered.getShapes().size());
+        assertEquals(30, recovered.getShapes().getX2(0));
+        assertEquals(Color.BLUE, recovered.getBackground());
+
+        // Restoring carries on journaling the recovered drawing
+        canvas = recovered.getShapes();
+        background = recovered.getBackground();
+        canvas.addShape(ShapeData.LINE, 1, 2, 3, 4, 0xFF000000, false, 0, 1);
+        journal.shapeAdded(canvas, 1);
+        journal.close();
+
+        canvas = new ShapeStore(); // The next start begins with an empty canvas again
+        background = Color.WHITE;
+        SessionJournal next = open();
+        assertEquals(2, next.getRecoveredScene().getShapes().size());
+        next.close();
+    }
+
+    @Test
+    void decliningDiscardsTheLastSession() throws IOException {
+        drawLastSession();
+
+        SessionJournal journal = open();
+        assertEquals(1, journal.getRecoveredScene().getShapes().size());
+        assertEquals(0, canvas.size());
+        journal.sceneReplaced(); // What JavaPaint does when the user answers No
+        journal.close();
+
+        SessionJournal next = open();
+        assertEquals(0, next.getRecoveredScene().getShapes().size());
+        assertEquals(Color.WHITE, next.getRecoveredScene().getBackground());
+        assertEquals(0, canvas.size());
+        next.close();
+    }
+
+    // A session that ends without a snapshot, as the first one after a fresh start does
+    private void drawLastSession() throws IOException {
+        SessionJournal journal = open();
+        ShapeStore drawn = new ShapeStore();
+        drawn.addShape(ShapeData.RECTANGLE, 10, 20, 30, 40, 0xFF000000, true, 0xFFFF0000, 2);
+        journal.shapeAdded(drawn, 0);
+        journal.backgroundChanged(Color.BLUE);
+        journal.close();
+    }
+
+    private SessionJournal open() throws IOException {
+        return SessionJournal.open(directory, new Scene(canvas, background, 800, 600),
+                () -> new Scene(canvas.snapshot(), background, 800, 600), reason -> failure = reason);
+    }
+
+    @AfterEach
+    void autosaveKeptWorking() {
+        assertNull(failure);
+    }
+}
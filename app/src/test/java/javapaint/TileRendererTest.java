@@ -0,0 +1,63 @@
+package javapaint;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TileRendererTest {
+    private static final int WIDTH = 300, HEIGHT = 200;
+
+    // Exports must look like the idle canvas, which renders the scene as one antialiased image
+    @Test
+    void tilesMatchTheIdleScreen() {
+        ShapeStore shapes = new ShapeStore();
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            int x = random.nextInt(WIDTH), y = random.nextInt(HEIGHT);
+            byte type = (byte) random.nextInt(ShapeData.POLYGON);
+            shapes.addShape(type, x, y, x + random.nextInt(80) - 40, y + random.nextInt(80) - 40,
+                    0xFF000000 | random.nextInt(0x1000000), random.nextBoolean(),
+                    random.nextInt(), 1 + random.nextInt(4));
+        }
+        for (double scale : new double[]{1, 1.5, 2}) {
+            TileRenderer tiles = new TileRenderer(ForkJoinPool.commonPool(), 64);
+            BufferedImage exported = tiles.renderImage(shapes, Color.WHITE, WIDTH, HEIGHT, scale);
+
+            int width = TileRenderer.outputSize(WIDTH, scale), height = TileRenderer.outputSize(HEIGHT, scale);
+            BufferedImage screen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = screen.createGraphics();
+            SceneRenderer.setQuality(g2d, true);
+            new SceneRenderer().render(g2d, shapes, Color.WHITE, scale, 1.0, new Rectangle(0, 0, width, height));
+            g2d.dispose();
+
+            assertArrayEquals(screen.getRGB(0, 0, width, height, null, 0, width),
+                    exported.getRGB(0, 0, width, height, null, 0, width), "scale " + scale);
+        }
+    }
+
+    // Each pool thread reuses its tile across tiles and renders, so a translucent background must not
+    // let the previous export show through
+    @Test
+    void translucentBackgroundDoesNotShowThePreviousRender() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            TileRenderer tiles = new TileRenderer(pool, 64);
+            ShapeStore red = new ShapeStore();
+            red.addShape(ShapeData.RECTANGLE, 0, 0, WIDTH, HEIGHT, 0xFFFF0000, true, 0xFFFF0000, 1);
+            tiles.renderImage(red, Color.WHITE, WIDTH, HEIGHT, 1);
+
+            BufferedImage exported = tiles.renderImage(new ShapeStore(), new Color(0x80808080, true), WIDTH, HEIGHT, 1);
+            int[] expected = new int[WIDTH * HEIGHT];
+            Arrays.fill(expected, 0xFF808080);
+            assertArrayEquals(expected, exported.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
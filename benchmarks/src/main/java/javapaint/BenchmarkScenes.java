@@ -0,0 +1,87 @@
+package javapaint;
+
+import java.awt.*;
+import java.util.Random;
+
+// Reproducible random scenes for the benchmarks
+final class BenchmarkScenes {
+    static final int CANVAS_WIDTH = 4000;
+    static final int CANVAS_HEIGHT = 3000;
+
+    private BenchmarkScenes() {
+    }
+
+    static Scene random(int count, long seed) {
+        Random random = new Random(seed);
+        ShapeStore shapes = new ShapeStore();
+        shapes.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            shapes.add(shape(random, (byte) random.nextInt(ShapeData.POLYGON + 1)));
+        }
+        return new Scene(shapes, Color.WHITE, CANVAS_WIDTH, CANVAS_HEIGHT);
+    }
+
+    // Boxes in a grid joined by connectors, drawn a row at a time: a few fills, one outline colour
+    // and one connector colour, like a typical flow chart or block diagram
+    static Scene diagram(int boxes, long seed) {
+        Color[] fills = {new Color(0xDDEEFF), new Color(0xFFF2CC), new Color(0xE2F0D9)};
+        Random random = new Random(seed);
+        int columns = (int) Math.ceil(Math.sqrt(boxes * (double) CANVAS_WIDTH / CANVAS_HEIGHT));
+        int cell = CANVAS_WIDTH / columns;
+        int width = cell * 2 / 3, height = cell / 2, gap = cell - width;
+        ShapeStore shapes = new ShapeStore();
+        shapes.ensureCapacity(3 * boxes);
+        for (int row = 0; row * columns < boxes; row++) {
+            int rowBoxes = Math.min(columns, boxes - row * columns);
+            int y = row * cell + gap / 2;
+            for (int column = 0; column < rowBoxes; column++) {
+                int x = column * cell + gap / 2;
+                shapes.add(new ShapeData(new Point(x, y), new Point(x + width, y + height), ShapeData.RECTANGLE,
+                        Color.BLACK, fills[random.nextInt(fills.length)], 2));
+            }
+            for (int column = 0; column < rowBoxes; column++) {
+                int x = column * cell + gap / 2;
+                if (column + 1 < rowBoxes) {
+                    shapes.add(new ShapeData(new Point(x + width, y + height / 2),
+                            new Point(x + cell, y + height / 2), ShapeData.LINE, Color.DARK_GRAY, null, 1));
+                }
+                if (row > 0) {
+                    shapes.add(new ShapeData(new Point(x + width / 2, y - gap),
+                            new Point(x + width / 2, y), ShapeData.LINE, Color.DARK_GRAY, null, 1));
+                }
+            }
+        }
+        return new Scene(shapes, Color.WHITE, CANVAS_WIDTH, CANVAS_HEIGHT);
+    }
+
+    // Shapes are kept small relative to the canvas, like a real drawing
+    static ShapeData shape(Random random, byte type) {
+        int x = random.nextInt(CANVAS_WIDTH - 200), y = random.nextInt(CANVAS_HEIGHT - 200);
+        Color draw = new Color(random.nextInt(0x1000000));
+        Color fill = random.nextBoolean() ? new Color(random.nextInt(0x1000000)) : null;
+        int stroke = 1 + random.nextInt(5);
+        if (type == ShapeData.PENCIL) {
+            // A random walk, like a scribble sampled every few pixels
+            int count = 20 + random.nextInt(200);
+            int[] xs = new int[count], ys = new int[count];
+            xs[0] = x;
+            ys[0] = y;
+            for (int p = 1; p < count; p++) {
+                xs[p] = Math.max(0, Math.min(CANVAS_WIDTH, xs[p - 1] + random.nextInt(9) - 4));
+                ys[p] = Math.max(0, Math.min(CANVAS_HEIGHT, ys[p - 1] + random.nextInt(9) - 4));
+            }
+            return new ShapeData(ShapeData.PENCIL, xs, ys, count, draw, null, stroke);
+        }
+        if (type == ShapeData.POLYGON) {
+            int count = 3 + random.nextInt(14);
+            int[] xs = new int[count], ys = new int[count];
+            for (int p = 0; p < count; p++) {
+                xs[p] = x + random.nextInt(200);
+                ys[p] = y + random.nextInt(200);
+            }
+            return new ShapeData(xs, ys, count, draw, fill, stroke);
+        }
+        Point end = new Point(x + 1 + random.nextInt(200), y + 1 + random.nextInt(200));
+        return new ShapeData(new Point(x, y), end, type, draw, fill, stroke);
+    }
+}
@@ -0,0 +1,37 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+// Generated-code throughput, without the cost of any real output
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CodeGeneratorBenchmark {
+    @Param({"1000", "100000"})
+    public int shapes;
+
+    // A CodeGenerator.Style; JMH's generated classes live in another package and cannot see the enum
+    @Param({"STATEMENTS", "DATA_TABLE"})
+    public String style;
+
+    private Scene scene;
+    private CodeGenerator.Style codeStyle;
+
+    @Setup
+    public void setUp() {
+        scene = BenchmarkScenes.random(shapes, 42);
+        codeStyle = CodeGenerator.Style.valueOf(style);
+    }
+
+    @Benchmark
+    public void generate() throws IOException {
+        new CodeGenerator(Writer.nullWriter(), codeStyle).generate(scene);
+    }
+}
@@ -0,0 +1,48 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// One frame of a shape drag: update the reused preview shape and draw it.
+// Run with -prof gc; the allocation rate per operation should stay at zero for lines and rectangles.
+// Ovals allocate inside Java2D's drawOval() and fillOval(); DragFrameAllocationTest checks both.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DragFrameBenchmark {
+    @Param({"Line", "Rectangle", "Oval"})
+    public String type;
+
+    private final Point start = new Point(100, 100);
+    private final Rectangle bounds = new Rectangle();
+    private ShapeData preview;
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_ARGB);
+        g2d = image.createGraphics();
+        preview = new ShapeData(new Point(), new Point(), type, Color.BLACK, null, 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public Rectangle dragFrame() {
+        frame = (frame + 1) & 511;
+        preview.update(start, start.x + frame, start.y + frame / 2, type, Color.BLACK, Color.RED, 2);
+        preview.drawShape(g2d);
+        return preview.getBounds(bounds);
+    }
+}
@@ -0,0 +1,63 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Render of a 1600x1000 view with and without batching same-state lines and rectangles.
+// Colour and stroke changes per frame are printed at the end of each trial, next to the timings.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DrawBatchingBenchmark {
+    private static final int VIEW_WIDTH = 1600;
+    private static final int VIEW_HEIGHT = 1000;
+
+    @Param({"diagram", "random"})
+    public String scene;
+
+    @Param({"1000", "10000"})
+    public int shapes;
+
+    // Zoomed out, batches are drawn shape by shape; at whole zooms each batch is one path
+    @Param({"0.5", "1.0"})
+    public double scale;
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    private Scene drawing;
+    private SceneRenderer renderer;
+    private BufferedImage image;
+    private Rectangle region;
+
+    @Setup
+    public void setUp() {
+        drawing = scene.equals("diagram") ? BenchmarkScenes.diagram(shapes, 42) : BenchmarkScenes.random(shapes, 42);
+        renderer = new SceneRenderer();
+        renderer.setBatching(batching);
+        region = new Rectangle(0, 0, Math.min(VIEW_WIDTH, (int) Math.ceil(drawing.getWidth() * scale)),
+                Math.min(VIEW_HEIGHT, (int) Math.ceil(drawing.getHeight() * scale)));
+        image = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%n%s, %d shapes, batching %s: %d shapes drawn with %d colour or stroke changes%n",
+                scene, drawing.getShapes().size(), batching, renderer.getDrawnCount(), renderer.getStateChanges());
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Graphics2D g2d = image.createGraphics();
+        SceneRenderer.setQuality(g2d, false);
+        renderer.render(g2d, drawing.getShapes(), drawing.getBackground(), scale, 1.0, region);
+        g2d.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,50 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// ShapeData.drawShape for one shape of each type into an offscreen image
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DrawShapeBenchmark {
+    @Param({"Line", "Rectangle", "Oval", "Polygon", "Pencil"})
+    public String type;
+
+    @Param({"false", "true"})
+    public boolean filled;
+
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private ShapeData shape;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(BenchmarkScenes.CANVAS_WIDTH, BenchmarkScenes.CANVAS_HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        g2d = image.createGraphics();
+        Random random = new Random(42);
+        byte typeCode = ShapeData.typeCode(type);
+        do {
+            shape = BenchmarkScenes.shape(random, typeCode);
+        } while (typeCode != ShapeData.PENCIL && (shape.getFillColor() != null) != filled); // Pencils are never filled
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage drawShape() {
+        shape.drawShape(g2d);
+        return image;
+    }
+}
@@ -0,0 +1,51 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Add, undo and redo of a shape against a history that is already full
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EditHistoryBenchmark {
+    private static final int HISTORY_SIZE = 10_000;
+
+    private ShapeStore shapes;
+    private EditHistory history;
+    private ShapeData shape;
+    private final Runnable onChange = () -> { };
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        shapes = new ShapeStore();
+        history = new EditHistory();
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            push(BenchmarkScenes.shape(random, (byte) random.nextInt(ShapeData.POLYGON + 1)));
+        }
+        shape = BenchmarkScenes.shape(random, ShapeData.POLYGON);
+    }
+
+    private void push(ShapeData shape) {
+        shapes.add(shape);
+        history.push(new AddShapeEdit(shapes, shape.estimatedBytes(), onChange));
+    }
+
+    @Benchmark
+    public boolean pushUndo() {
+        // Leaves the history as it was, so every invocation does the same work
+        push(shape);
+        return history.undo();
+    }
+
+    @Benchmark
+    public boolean undoRedo() {
+        history.undo();
+        return history.redo();
+    }
+}
@@ -0,0 +1,54 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Repaint of the whole scene cache, which is what paintComponent costs after every committed edit.
+// The visible region is a 1600x1000 window at the top-left corner of the zoomed canvas.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SceneRenderBenchmark {
+    private static final int VIEW_WIDTH = 1600;
+    private static final int VIEW_HEIGHT = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int shapes;
+
+    @Param({"0.1", "0.5", "1.0", "4.0"})
+    public double scale;
+
+    // Fast frames while interacting, antialiased frames once input pauses
+    @Param({"false", "true"})
+    public boolean highQuality;
+
+    private Scene scene;
+    private SceneRenderer renderer;
+    private BufferedImage image;
+    private Rectangle region;
+
+    @Setup
+    public void setUp() {
+        scene = BenchmarkScenes.random(shapes, 42);
+        renderer = new SceneRenderer();
+        region = new Rectangle(0, 0,
+                Math.min(VIEW_WIDTH, (int) Math.ceil(scene.getWidth() * scale)),
+                Math.min(VIEW_HEIGHT, (int) Math.ceil(scene.getHeight() * scale)));
+        image = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        Graphics2D g2d = image.createGraphics();
+        SceneRenderer.setQuality(g2d, highQuality);
+        renderer.render(g2d, scene.getShapes(), scene.getBackground(), scale, 1.0, region);
+        g2d.dispose();
+        return image;
+    }
+}
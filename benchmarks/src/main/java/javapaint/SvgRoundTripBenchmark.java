@@ -0,0 +1,51 @@
+package javapaint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// SVG export to a discarding stream and StAX import from memory. The SVG size is printed at the end
+// of each trial so the timings convert to MB/s; SceneSvgTest checks the round trip itself.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SvgRoundTripBenchmark {
+    @Param({"diagram", "random"})
+    public String scene;
+
+    @Param({"10000", "100000"})
+    public int shapes;
+
+    private Scene drawing;
+    private byte[] svg;
+
+    @Setup
+    public void setUp() throws IOException {
+        drawing = scene.equals("diagram") ? BenchmarkScenes.diagram(shapes, 42) : BenchmarkScenes.random(shapes, 42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SceneSvg.write(out, drawing);
+        svg = out.toByteArray();
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%n%s, %d shapes: %.1f MB of SVG%n", scene, drawing.getShapes().size(), svg.length / 1e6);
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        SceneSvg.write(OutputStream.nullOutputStream(), drawing);
+    }
+
+    @Benchmark
+    public Scene importSvg() throws IOException {
+        return SceneSvg.read(new ByteArrayInputStream(svg));
+    }
+}